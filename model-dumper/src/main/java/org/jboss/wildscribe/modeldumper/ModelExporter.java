@@ -70,9 +70,15 @@ public class ModelExporter {
             operation.get("inherited").set(false);
             operation.get("recursive").set(true);
             try {
-                final ModelNode result = executeForResult(client, operation);
-                result.get("possible-capabilities").set(getPossibleCapabilities(client));
+                // The version info is written first, so the product name and version can be read from the start of
+                // the file without decoding the rest of the model
+                final ModelNode result = new ModelNode();
                 result.get("version-info").set(getVersionInfo(client));
+                final ModelNode description = executeForResult(client, operation);
+                for (String key : description.keys()) {
+                    result.get(key).set(description.get(key));
+                }
+                result.get("possible-capabilities").set(getPossibleCapabilities(client));
                 result.writeExternal(new DataOutputStream(out));
             } catch (IOException e) {
                 throw new RuntimeException(e);
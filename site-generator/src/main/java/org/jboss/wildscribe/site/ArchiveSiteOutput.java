@@ -0,0 +1,178 @@
+package org.jboss.wildscribe.site;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jboss.logging.Logger;
+
+/**
+ * An output which writes the site into a single zip archive instead of a directory tree.
+ * <p>
+ * The archive is written as one sequential stream to a temporary file which replaces the archive once the generation
+ * completes. Each file is generated in memory and then appended as an entry, so the files can still be rendered
+ * concurrently. The entries are in the order the files are generated and all have the same timestamp, so a site
+ * generated by a single thread is always written to the same archive.
+ * </p>
+ */
+class ArchiveSiteOutput extends SiteOutput {
+    private static final Logger LOGGER = Logger.getLogger(ArchiveSiteOutput.class.getPackage().getName());
+
+    // The earliest timestamp which can be stored without an extended timestamp field
+    private static final long ENTRY_TIME = LocalDateTime.of(1980, 2, 1, 0, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    private final Path archive;
+    private final Path tmp;
+    private final OutputStream file;
+    private final ZipOutputStream out;
+    private final Precompressor precompressor;
+    private final LongAdder written = new LongAdder();
+
+    private ArchiveSiteOutput(final Path archive, final Path tmp, final Precompressor precompressor) throws IOException {
+        super(archive, false, Collections.emptyMap(), null);
+        this.archive = archive;
+        this.tmp = tmp;
+        this.file = Files.newOutputStream(tmp);
+        this.out = new ZipOutputStream(new BufferedOutputStream(file));
+        this.precompressor = precompressor;
+    }
+
+    /**
+     * Checks whether a target of the generation is an archive, a {@code .zip} or {@code .jar} file rather than a
+     * directory.
+     *
+     * @param target the target of the generation
+     *
+     * @return {@code true} if the site should be written to an archive
+     */
+    static boolean isArchive(final Path target) {
+        if (Files.isDirectory(target) || target.getFileName() == null) {
+            return false;
+        }
+        final String name = target.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".jar");
+    }
+
+    /**
+     * Creates the output for an archive. An existing archive is only replaced once the generation completes.
+     *
+     * @param target        the archive to write
+     * @param precompressor the compressor adding the compressed siblings or {@code null} to not compress the site
+     *
+     * @return the output
+     *
+     * @throws IOException if the archive cannot be created
+     */
+    static ArchiveSiteOutput create(final Path target, final Precompressor precompressor) throws IOException {
+        final Path archive = target.toAbsolutePath().normalize();
+        Files.createDirectories(archive.getParent());
+        final Path tmp = archive.resolveSibling(archive.getFileName() + ".tmp");
+        return new ArchiveSiteOutput(archive, tmp, precompressor);
+    }
+
+    @Override
+    void write(final Path file, final byte[] content) throws IOException {
+        final byte[] compressed = precompressor != null && precompressor.accepts(file) ? precompressor.compress(content) : null;
+        synchronized (out) {
+            addEntry(file, content);
+            if (compressed != null) {
+                addEntry(Precompressor.sibling(file), compressed);
+            }
+        }
+    }
+
+    @Override
+    void write(final Path file, final InputStream in) throws IOException {
+        write(file, in.readAllBytes());
+    }
+
+    @Override
+    Writer newWriter(final Path file) {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream(8192);
+        return new OutputStreamWriter(content, StandardCharsets.UTF_8) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    super.close();
+                    ArchiveSiteOutput.this.write(file, content.toByteArray());
+                }
+            }
+        };
+    }
+
+    @Override
+    void finish() throws IOException {
+        try {
+            try {
+                if (precompressor != null) {
+                    precompressor.finish();
+                }
+            } finally {
+                close();
+            }
+            Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        LOGGER.infof("Wrote %d files to %s", written.sum(), archive);
+    }
+
+    /**
+     * Closes the temporary archive and removes it. The existing archive is left untouched.
+     */
+    @Override
+    void abort() {
+        if (precompressor != null) {
+            precompressor.abort();
+        }
+        try {
+            try {
+                close();
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            LOGGER.warnf(e, "Failed to remove the incomplete archive %s", tmp);
+        }
+    }
+
+    /**
+     * Closes the archive stream. The file is closed even if the archive cannot be completed.
+     */
+    private void close() throws IOException {
+        synchronized (out) {
+            try {
+                out.close();
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    private void addEntry(final Path file, final byte[] content) throws IOException {
+        final ZipEntry entry = new ZipEntry(relativeName(file));
+        entry.setTime(ENTRY_TIME);
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+        written.increment();
+    }
+}
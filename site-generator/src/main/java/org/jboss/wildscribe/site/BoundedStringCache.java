@@ -0,0 +1,66 @@
+package org.jboss.wildscribe.site;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Strings kept by key up to a maximum size, the least recently used strings are evicted first once the size is
+ * exceeded. The size is the number of characters of the strings, two bytes each. A cache can be used by several threads
+ * at once.
+ */
+final class BoundedStringCache {
+    private final long maxChars;
+    private final Map<String, String> values = new LinkedHashMap<>(256, 0.75f, true);
+    private long chars;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxBytes the approximate maximum size of the cached strings
+     */
+    BoundedStringCache(final long maxBytes) {
+        this.maxChars = maxBytes / 2;
+    }
+
+    /**
+     * Returns the string for a key.
+     *
+     * @param key the key
+     *
+     * @return the string or {@code null} if it is not cached
+     */
+    String get(final String key) {
+        synchronized (values) {
+            return values.get(key);
+        }
+    }
+
+    /**
+     * Adds a string, evicting the least recently used strings if the cache is full.
+     *
+     * @param key   the key
+     * @param value the string
+     */
+    void put(final String key, final String value) {
+        synchronized (values) {
+            final String previous = values.put(key, value);
+            chars += value.length() - (previous == null ? 0 : previous.length());
+            final Iterator<String> iterator = values.values().iterator();
+            while (chars > maxChars && iterator.hasNext()) {
+                chars -= iterator.next().length();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes every string.
+     */
+    void clear() {
+        synchronized (values) {
+            values.clear();
+            chars = 0;
+        }
+    }
+}
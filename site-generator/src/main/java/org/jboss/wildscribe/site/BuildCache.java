@@ -0,0 +1,173 @@
+package org.jboss.wildscribe.site;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A manifest stored with the generated site which records the fingerprint of each generated version.
+ * <p>
+ * The fingerprint of a version covers its DMR file, its messages file, the templates, the layout, the minification mode,
+ * the pre-compression settings, the output mode and the version of the generator. A version whose fingerprint matches
+ * the one recorded by the previous run does not need to be generated again.
+ * </p>
+ */
+class BuildCache {
+    private static final Logger LOGGER = Logger.getLogger(BuildCache.class.getPackage().getName());
+
+    static final String MANIFEST = SiteOutput.METADATA_PREFIX + "cache";
+
+    private final Path file;
+    private final String sharedFingerprint;
+    private final Map<String, String> previous;
+    private final Map<String, String> current = new ConcurrentHashMap<>();
+
+    private BuildCache(final Path file, final String sharedFingerprint, final Map<String, String> previous) {
+        this.file = file;
+        this.sharedFingerprint = sharedFingerprint;
+        this.previous = previous;
+    }
+
+    /**
+     * Loads the cache stored in the site directory.
+     *
+     * @param root      the site directory
+     * @param templates the template directory resource
+     *
+     * @return the cache
+     *
+     * @throws IOException if the cache or the templates could not be read
+     */
+    static BuildCache load(final Path root, final URL templates) throws IOException {
+        final Map<String, String> templateHashes = new TreeMap<>();
+        FileUtils.visitResources(templates, (name, in) -> templateHashes.put(name, hash(in)));
+        final MessageDigest digest = newDigest();
+        update(digest, String.valueOf(Generator.class.getPackage().getImplementationVersion()));
+        update(digest, MinifyMode.get().name());
+        update(digest, Precompressor.describe());
+        update(digest, String.valueOf(GeneratorProperties.isEnabled(GeneratorProperties.SPA)));
+        templateHashes.forEach((name, hash) -> {
+            update(digest, name);
+            update(digest, hash);
+        });
+        return new BuildCache(root.resolve(MANIFEST), FileUtils.toHex(digest.digest()), read(root.resolve(MANIFEST)));
+    }
+
+    /**
+     * Computes the fingerprint of a version.
+     *
+     * @param version    the version
+     * @param layoutHtml the layout the version is rendered with
+     *
+     * @return the fingerprint
+     *
+     * @throws IOException if the model files could not be read
+     */
+    String fingerprint(final Version version, final String layoutHtml) throws IOException {
+        final MessageDigest digest = newDigest();
+        update(digest, sharedFingerprint);
+        update(digest, layoutHtml);
+        update(digest, hash(version.getDmrFile()));
+        final File messages = version.getMessagesFile();
+        update(digest, messages == null ? "" : hash(messages));
+        return FileUtils.toHex(digest.digest());
+    }
+
+    /**
+     * Checks whether the previous run generated the version with the same fingerprint.
+     *
+     * @param version     the version
+     * @param fingerprint the current fingerprint of the version
+     *
+     * @return {@code true} if the version is unchanged
+     */
+    boolean isCurrent(final Version version, final String fingerprint) {
+        return fingerprint.equals(previous.get(key(version)));
+    }
+
+    /**
+     * Records the fingerprint of a version generated, or kept, by this run.
+     *
+     * @param version     the version
+     * @param fingerprint the fingerprint of the version
+     */
+    void record(final Version version, final String fingerprint) {
+        current.put(key(version), fingerprint);
+    }
+
+    /**
+     * Stores the fingerprints recorded by this run.
+     *
+     * @throws IOException if the cache could not be written
+     */
+    void store() throws IOException {
+        final StringBuilder manifest = new StringBuilder();
+        new TreeMap<>(current).forEach((key, fingerprint) -> manifest.append(fingerprint).append(' ').append(key).append('\n'));
+        Files.write(file, manifest.toString().getBytes(StandardCharsets.UTF_8));
+        LOGGER.debugf("Stored %d version fingerprints in %s", current.size(), file);
+    }
+
+    private static String key(final Version version) {
+        return version.getProduct() + ':' + version.getVersion();
+    }
+
+    private static Map<String, String> read(final Path file) throws IOException {
+        if (Files.notExists(file)) {
+            return Collections.emptyMap();
+        }
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        final Map<String, String> result = new HashMap<>(lines.size());
+        for (String line : lines) {
+            final int index = line.indexOf(' ');
+            if (index > 0) {
+                result.put(line.substring(index + 1), line.substring(0, index));
+            }
+        }
+        return result;
+    }
+
+    private static String hash(final File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return hash(in);
+        }
+    }
+
+    private static String hash(final InputStream in) throws IOException {
+        final MessageDigest digest = newDigest();
+        try (DigestInputStream digestIn = new DigestInputStream(in, digest)) {
+            final byte[] buffer = new byte[8192];
+            while (digestIn.read(buffer) != -1) {
+                // the digest is updated while reading
+            }
+        }
+        return FileUtils.toHex(digest.digest());
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package org.jboss.wildscribe.site;
 
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -18,10 +17,14 @@ public class Capability {
     private final Map<String, String> providerPointsUrls;
 
     private Capability(String name, boolean dynamic, List<String> providerPoints) {
+        this(name, dynamic, providerPoints, null);
+    }
+
+    private Capability(String name, boolean dynamic, List<String> providerPoints, Map<String, String> providerPointsUrls) {
         this.name = name;
         this.dynamic = dynamic;
         this.providerPoints = providerPoints;
-        this.providerPointsUrls = calculateProviderPointsUrls(providerPoints);
+        this.providerPointsUrls = providerPointsUrls == null ? calculateProviderPointsUrls(providerPoints) : providerPointsUrls;
     }
 
     public String getName() {
@@ -57,6 +60,19 @@ public class Capability {
         return providerPointsUrls;
     }
 
+    /**
+     * Returns a copy of the capability without one of its provider points, reusing the URLs of the others.
+     *
+     * @param dynamic       whether the copy is dynamic
+     * @param providerPoint the provider point to leave out
+     *
+     * @return the copy
+     */
+    Capability withoutProviderPoint(boolean dynamic, String providerPoint) {
+        List<String> points = providerPoints.stream().filter(s -> !s.equals(providerPoint)).collect(Collectors.toList());
+        return new Capability(name, dynamic, points, points.stream().collect(Collectors.toMap(s -> s, providerPointsUrls::get)));
+    }
+
     /*
         "capabilities" => [{
             "name" => "org.wildfly.io.worker",
@@ -83,15 +99,6 @@ public class Capability {
         return new Capability(name, dynamic, providerPoints);
     }
 
-    static List<Capability> fromModelList(ModelNode capModel, Map<String, Capability> capabilities, PathAddress pathElements) {
-        if (!capModel.isDefined()) {
-            return Collections.emptyList();
-        }
-        List<Capability> r = new LinkedList<>();
-        capModel.asList().forEach(c -> r.add(fromModel(c, capabilities, pathElements.toCLIStyleString())));
-        return r;
-    }
-
     public String getCapabilityDescriptionUrl() {
         StringBuilder url = new StringBuilder("https://github.com/wildfly/wildfly-capabilities/tree/master/");
         return url.append(name.replaceAll("\\.", "/")).append("/capability.adoc").toString();
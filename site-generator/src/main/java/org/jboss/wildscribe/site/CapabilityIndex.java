@@ -0,0 +1,100 @@
+package org.jboss.wildscribe.site;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * The capabilities of a version, built once from the {@code possible-capabilities} of its model.
+ * <p>
+ * The provider points of each capability are parsed and turned into URLs when the index is built. Resolving the
+ * capabilities of a resource then only looks them up, and reuses the capability of the version as is unless the
+ * resource is one of its provider points.
+ * </p>
+ */
+final class CapabilityIndex {
+    static final CapabilityIndex EMPTY = new CapabilityIndex(Collections.emptyMap());
+
+    private final Map<String, Capability> capabilities;
+
+    /**
+     * Creates an index of capabilities.
+     *
+     * @param capabilities the capabilities by name
+     */
+    CapabilityIndex(final Map<String, Capability> capabilities) {
+        // A linked map keeps the capabilities sorted for the pages listing them while looking them up in constant time
+        this.capabilities = Collections.unmodifiableMap(new LinkedHashMap<>(new TreeMap<>(capabilities)));
+    }
+
+    /**
+     * Builds the index of the capabilities of a version.
+     *
+     * @param possibleCapabilities the {@code possible-capabilities} of the root resource
+     *
+     * @return the index
+     */
+    static CapabilityIndex fromModel(final ModelNode possibleCapabilities) {
+        if (!possibleCapabilities.isDefined()) {
+            return EMPTY;
+        }
+        final Map<String, Capability> capabilities = new TreeMap<>();
+        for (ModelNode cap : possibleCapabilities.asList()) {
+            final Capability capability = Capability.fromModel(cap, Collections.emptyMap(), null);
+            capabilities.put(capability.getName(), capability);
+        }
+        return new CapabilityIndex(capabilities);
+    }
+
+    /**
+     * Returns every capability of the version, sorted by name.
+     */
+    Map<String, Capability> asMap() {
+        return capabilities;
+    }
+
+    Capability get(final String name) {
+        return capabilities.get(name);
+    }
+
+    /**
+     * Resolves the capabilities provided by a resource. A capability without registration points of its own lists the
+     * other provider points of the capability of the version.
+     *
+     * @param capabilities the {@code capabilities} of the resource
+     * @param address      the address of the resource
+     *
+     * @return the capabilities of the resource
+     */
+    List<Capability> resolve(final ModelNode capabilities, final PathAddress address) {
+        if (!capabilities.isDefined()) {
+            return Collections.emptyList();
+        }
+        final List<ModelNode> list = capabilities.asList();
+        final List<Capability> resolved = new ArrayList<>(list.size());
+        String currentResourcePath = null;
+        for (ModelNode capability : list) {
+            final String name = ModelNodes.read(capability, "name").asString();
+            final boolean dynamic = ModelNodes.read(capability, "dynamic").asBoolean(false);
+            final Capability global = this.capabilities.get(name);
+            if (capability.hasDefined("registration-points") || global == null) {
+                resolved.add(Capability.fromModel(capability, Collections.emptyMap(), null));
+                continue;
+            }
+            if (currentResourcePath == null) {
+                currentResourcePath = address.toCLIStyleString();
+            }
+            if (global.isDynamic() == dynamic && !global.getProviderPoints().contains(currentResourcePath)) {
+                resolved.add(global);
+            } else {
+                resolved.add(global.withoutProviderPoint(dynamic, currentResourcePath));
+            }
+        }
+        return resolved;
+    }
+}
@@ -50,21 +50,28 @@ public class Child implements Comparable<Child> {
 
 
     public static Child fromProperty(final Property property) {
-        String name = property.getName();
-        String description = property.getValue().get("description").asString();
+        return fromModel(property.getName(), property.getValue());
+    }
+
+    /**
+     * Creates a child type from its description, which is only read so it does not need to be copied first.
+     */
+    static Child fromModel(final String name, final ModelNode childType) {
+        String description = ModelNodes.read(childType, "description").asString();
 
         final List<Child> registrations = new ArrayList<Child>();
-        ModelNode modelDesc = property.getValue().get("model-description");
+        ModelNode modelDesc = ModelNodes.read(childType, "model-description");
         if (modelDesc.isDefined()) {
-            for (Property child : modelDesc.asPropertyList()) {
-                if (!child.getName().equals("*")) {
-                    registrations.add(new Child(child.getName(), child.getValue().get("description").asString(""), Deprecated.fromModel(child.getValue()), null));
+            for (String child : modelDesc.keys()) {
+                if (!child.equals("*")) {
+                    final ModelNode registration = modelDesc.get(child);
+                    registrations.add(new Child(child, ModelNodes.read(registration, "description").asString(""), Deprecated.fromModel(registration), null));
                 }
             }
         }
         Collections.sort(registrations);
 
-        Child op = new Child(name, description, Deprecated.fromModel(property.getValue()), registrations);
+        Child op = new Child(name, description, Deprecated.fromModel(childType), registrations);
 
         return op;
     }
@@ -0,0 +1,426 @@
+package org.jboss.wildscribe.site;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.ValueExpression;
+
+/**
+ * An immutable and compact copy of a management model.
+ * <p>
+ * A {@link ModelNode} keeps each object in its own {@link java.util.LinkedHashMap} and a copy of every key and string.
+ * A compact node keeps the keys and values of an object in arrays, and the keys, the key sets of the objects and the
+ * string values are shared through a {@link Pool}. The attributes of the resources mostly have the same keys and many
+ * descriptions are repeated, so a pool shared by several versions holds each of them only once.
+ * </p>
+ * <p>
+ * The templates and the view model still read {@code ModelNode}s. Each resource is converted with
+ * {@link #toResourceModel()} when its page is described, which only copies the resource itself.
+ * </p>
+ */
+final class CompactNode {
+    private static final String CHILDREN = "children";
+    private static final String MODEL_DESCRIPTION = "model-description";
+    private static final String[] NO_KEYS = new String[0];
+    private static final CompactNode[] NO_VALUES = new CompactNode[0];
+
+    static final CompactNode UNDEFINED = new CompactNode(ModelType.UNDEFINED, null, NO_KEYS, NO_VALUES);
+    private static final CompactNode TRUE = new CompactNode(ModelType.BOOLEAN, Boolean.TRUE, NO_KEYS, NO_VALUES);
+    private static final CompactNode FALSE = new CompactNode(ModelType.BOOLEAN, Boolean.FALSE, NO_KEYS, NO_VALUES);
+
+    private final ModelType type;
+    // The value of a simple type
+    private final Object value;
+    // The keys of an object or the name of a property
+    private final String[] keys;
+    // The values of an object, the elements of a list or the value of a property
+    private final CompactNode[] values;
+
+    private CompactNode(final ModelType type, final Object value, final String[] keys, final CompactNode[] values) {
+        this.type = type;
+        this.value = value;
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Reads a DMR encoded model, as written by {@link ModelNode#writeExternal(java.io.DataOutput)}.
+     *
+     * @param input the input positioned at the start of the model
+     * @param pool  the pool the strings are shared through
+     *
+     * @return the model
+     *
+     * @throws IOException if the model cannot be read
+     */
+    static CompactNode read(final MappedInput input, final Pool pool) throws IOException {
+        final int type = input.readUnsignedByte();
+        switch (type) {
+            case 'u':
+                return UNDEFINED;
+            case 'd':
+                return new CompactNode(ModelType.BIG_DECIMAL, new BigDecimal(input.readUTF()), NO_KEYS, NO_VALUES);
+            case 'i': {
+                final byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                return new CompactNode(ModelType.BIG_INTEGER, new BigInteger(bytes), NO_KEYS, NO_VALUES);
+            }
+            case 'Z':
+                return input.readBoolean() ? TRUE : FALSE;
+            case 'b': {
+                final byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                return new CompactNode(ModelType.BYTES, bytes, NO_KEYS, NO_VALUES);
+            }
+            case 'D':
+                return new CompactNode(ModelType.DOUBLE, input.readDouble(), NO_KEYS, NO_VALUES);
+            case 'e':
+                return new CompactNode(ModelType.EXPRESSION, pool.intern(input.readUTF()), NO_KEYS, NO_VALUES);
+            case 'I':
+                return new CompactNode(ModelType.INT, input.readInt(), NO_KEYS, NO_VALUES);
+            case 'J':
+                return new CompactNode(ModelType.LONG, input.readLong(), NO_KEYS, NO_VALUES);
+            case 's':
+                return pool.string(input.readUTF());
+            case 'S':
+                return pool.string(input.readLongString());
+            case 't':
+                return new CompactNode(ModelType.TYPE, toType(input.readUnsignedByte()), NO_KEYS, NO_VALUES);
+            case 'l': {
+                final CompactNode[] elements = new CompactNode[input.readInt()];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = read(input, pool);
+                }
+                return new CompactNode(ModelType.LIST, null, NO_KEYS, elements);
+            }
+            case 'o': {
+                final int size = input.readInt();
+                final String[] keys = new String[size];
+                final CompactNode[] values = new CompactNode[size];
+                for (int i = 0; i < size; i++) {
+                    keys[i] = pool.intern(input.readUTF());
+                    values[i] = read(input, pool);
+                }
+                return new CompactNode(ModelType.OBJECT, null, pool.keys(keys), values);
+            }
+            case 'p': {
+                final String name = pool.intern(input.readUTF());
+                return new CompactNode(ModelType.PROPERTY, null, new String[] {name}, new CompactNode[] {read(input, pool)});
+            }
+            default:
+                throw new StreamCorruptedException(String.format("Invalid type %s at %d", (char) type, input.position() - 1));
+        }
+    }
+
+    /**
+     * Copies a model.
+     *
+     * @param node the model
+     * @param pool the pool the strings are shared through
+     *
+     * @return the copy
+     */
+    static CompactNode of(final ModelNode node, final Pool pool) {
+        switch (node.getType()) {
+            case UNDEFINED:
+                return UNDEFINED;
+            case BOOLEAN:
+                return node.asBoolean() ? TRUE : FALSE;
+            case STRING:
+                return pool.string(node.asString());
+            case EXPRESSION:
+                return new CompactNode(ModelType.EXPRESSION, pool.intern(node.asExpression().getExpressionString()), NO_KEYS, NO_VALUES);
+            case BIG_DECIMAL:
+                return new CompactNode(ModelType.BIG_DECIMAL, node.asBigDecimal(), NO_KEYS, NO_VALUES);
+            case BIG_INTEGER:
+                return new CompactNode(ModelType.BIG_INTEGER, node.asBigInteger(), NO_KEYS, NO_VALUES);
+            case BYTES:
+                return new CompactNode(ModelType.BYTES, node.asBytes(), NO_KEYS, NO_VALUES);
+            case DOUBLE:
+                return new CompactNode(ModelType.DOUBLE, node.asDouble(), NO_KEYS, NO_VALUES);
+            case INT:
+                return new CompactNode(ModelType.INT, node.asInt(), NO_KEYS, NO_VALUES);
+            case LONG:
+                return new CompactNode(ModelType.LONG, node.asLong(), NO_KEYS, NO_VALUES);
+            case TYPE:
+                return new CompactNode(ModelType.TYPE, node.asType(), NO_KEYS, NO_VALUES);
+            case LIST: {
+                final int size = node.asInt();
+                final CompactNode[] elements = new CompactNode[size];
+                for (int i = 0; i < size; i++) {
+                    elements[i] = of(node.get(i), pool);
+                }
+                return new CompactNode(ModelType.LIST, null, NO_KEYS, elements);
+            }
+            case OBJECT: {
+                final String[] keys = node.keys().toArray(NO_KEYS);
+                final CompactNode[] values = new CompactNode[keys.length];
+                for (int i = 0; i < keys.length; i++) {
+                    values[i] = of(node.get(keys[i]), pool);
+                    keys[i] = pool.intern(keys[i]);
+                }
+                return new CompactNode(ModelType.OBJECT, null, pool.keys(keys), values);
+            }
+            case PROPERTY:
+                return new CompactNode(ModelType.PROPERTY, null, new String[] {pool.intern(node.asProperty().getName())},
+                        new CompactNode[] {of(node.asProperty().getValue(), pool)});
+            default:
+                throw new IllegalArgumentException("Unknown type " + node.getType());
+        }
+    }
+
+    ModelType getType() {
+        return type;
+    }
+
+    boolean isDefined() {
+        return type != ModelType.UNDEFINED;
+    }
+
+    /**
+     * Returns the keys of an object, in the order of the model.
+     */
+    String[] keys() {
+        return type == ModelType.OBJECT ? keys.clone() : NO_KEYS;
+    }
+
+    /**
+     * Checks whether an object has a defined value for a key.
+     */
+    boolean hasDefined(final String key) {
+        return get(key).isDefined();
+    }
+
+    /**
+     * Returns the value of a key of an object.
+     *
+     * @param key the key
+     *
+     * @return the value or {@link #UNDEFINED} if the node is not an object or has no value for the key
+     */
+    CompactNode get(final String key) {
+        if (type == ModelType.OBJECT) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return values[i];
+                }
+            }
+        }
+        return UNDEFINED;
+    }
+
+    /**
+     * Converts the node and everything below it.
+     *
+     * @return a new model
+     */
+    ModelNode toModelNode() {
+        final ModelNode node = new ModelNode();
+        fill(node, false);
+        return node;
+    }
+
+    /**
+     * Converts a resource for its page. The registrations in its {@code children} are reduced to their description and
+     * deprecation, which is all the page shows.
+     *
+     * @return a new model of the resource
+     */
+    ModelNode toResourceModel() {
+        final ModelNode node = new ModelNode();
+        fill(node, true);
+        return node;
+    }
+
+    private void fill(final ModelNode node, final boolean resource) {
+        switch (type) {
+            case UNDEFINED:
+                break;
+            case BOOLEAN:
+                node.set((Boolean) value);
+                break;
+            case STRING:
+                node.set((String) value);
+                break;
+            case EXPRESSION:
+                node.set(new ValueExpression((String) value));
+                break;
+            case BIG_DECIMAL:
+                node.set((BigDecimal) value);
+                break;
+            case BIG_INTEGER:
+                node.set((BigInteger) value);
+                break;
+            case BYTES:
+                node.set((byte[]) value);
+                break;
+            case DOUBLE:
+                node.set((Double) value);
+                break;
+            case INT:
+                node.set((Integer) value);
+                break;
+            case LONG:
+                node.set((Long) value);
+                break;
+            case TYPE:
+                node.set((ModelType) value);
+                break;
+            case LIST:
+                node.setEmptyList();
+                for (CompactNode element : values) {
+                    element.fill(node.add(), false);
+                }
+                break;
+            case OBJECT:
+                node.setEmptyObject();
+                for (int i = 0; i < keys.length; i++) {
+                    if (resource && CHILDREN.equals(keys[i]) && values[i].type == ModelType.OBJECT) {
+                        values[i].fillChildren(node.get(keys[i]));
+                    } else {
+                        values[i].fill(node.get(keys[i]), false);
+                    }
+                }
+                break;
+            case PROPERTY:
+                node.set(keys[0], values[0].toModelNode());
+                break;
+            default:
+                throw new IllegalStateException("Unknown type " + type);
+        }
+    }
+
+    private void fillChildren(final ModelNode children) {
+        children.setEmptyObject();
+        for (int i = 0; i < keys.length; i++) {
+            final CompactNode childType = values[i];
+            final ModelNode target = children.get(keys[i]);
+            if (childType.type != ModelType.OBJECT) {
+                childType.fill(target, false);
+                continue;
+            }
+            target.setEmptyObject();
+            for (int j = 0; j < childType.keys.length; j++) {
+                final CompactNode value = childType.values[j];
+                if (MODEL_DESCRIPTION.equals(childType.keys[j]) && value.type == ModelType.OBJECT) {
+                    final ModelNode registrations = target.get(MODEL_DESCRIPTION);
+                    registrations.setEmptyObject();
+                    for (int k = 0; k < value.keys.length; k++) {
+                        value.values[k].fillSummary(registrations.get(value.keys[k]));
+                    }
+                } else {
+                    value.fill(target.get(childType.keys[j]), false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts the part of a registration shown by the page of its parent, the same as
+     * {@link DmrStreamReader#summarize(ModelNode)}.
+     */
+    private void fillSummary(final ModelNode summary) {
+        if (type != ModelType.OBJECT) {
+            fill(summary, false);
+            return;
+        }
+        summary.setEmptyObject();
+        for (int i = 0; i < keys.length; i++) {
+            if ("description".equals(keys[i]) || "deprecated".equals(keys[i])) {
+                values[i].fill(summary.get(keys[i]), false);
+            }
+        }
+    }
+
+    private static ModelType toType(final int c) throws StreamCorruptedException {
+        switch (c) {
+            case 'd':
+                return ModelType.BIG_DECIMAL;
+            case 'i':
+                return ModelType.BIG_INTEGER;
+            case 'Z':
+                return ModelType.BOOLEAN;
+            case 'b':
+                return ModelType.BYTES;
+            case 'D':
+                return ModelType.DOUBLE;
+            case 'e':
+                return ModelType.EXPRESSION;
+            case 'I':
+                return ModelType.INT;
+            case 'l':
+                return ModelType.LIST;
+            case 'J':
+                return ModelType.LONG;
+            case 'o':
+                return ModelType.OBJECT;
+            case 'p':
+                return ModelType.PROPERTY;
+            case 's':
+                return ModelType.STRING;
+            case 't':
+                return ModelType.TYPE;
+            case 'u':
+                return ModelType.UNDEFINED;
+            default:
+                throw new StreamCorruptedException(String.format("Invalid type %s", (char) c));
+        }
+    }
+
+    /**
+     * The strings, string values and key sets shared by the compact models of a generation. A pool can be used by
+     * several threads at once.
+     */
+    static final class Pool {
+        private final Map<String, String> strings = new ConcurrentHashMap<>();
+        private final Map<String, CompactNode> stringNodes = new ConcurrentHashMap<>();
+        private final Map<Keys, String[]> keys = new ConcurrentHashMap<>();
+
+        String intern(final String value) {
+            final String existing = strings.putIfAbsent(value, value);
+            return existing == null ? value : existing;
+        }
+
+        CompactNode string(final String value) {
+            return stringNodes.computeIfAbsent(intern(value), v -> new CompactNode(ModelType.STRING, v, NO_KEYS, NO_VALUES));
+        }
+
+        /**
+         * Returns the shared copy of a set of interned keys.
+         */
+        String[] keys(final String[] value) {
+            if (value.length == 0) {
+                return NO_KEYS;
+            }
+            final String[] existing = keys.putIfAbsent(new Keys(value), value);
+            return existing == null ? value : existing;
+        }
+    }
+
+    private static final class Keys {
+        private final String[] keys;
+        private final int hash;
+
+        private Keys(final String[] keys) {
+            this.keys = keys;
+            this.hash = Arrays.hashCode(keys);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Keys && Arrays.equals(keys, ((Keys) obj).keys);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
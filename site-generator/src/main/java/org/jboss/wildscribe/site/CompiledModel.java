@@ -0,0 +1,397 @@
+package org.jboss.wildscribe.site;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.logging.Logger;
+
+/**
+ * A DMR model compiled into a file from which any single resource can be read without decoding the rest of the model.
+ * <p>
+ * The file holds a record for each resource of the model, the DMR encoding of the resource where each registration in
+ * its {@code children} is reduced to its description and deprecation. The records are followed by an index which maps
+ * the CLI style address of each resource, as returned by {@link PathAddress#toCLIStyleString()}, to its record. Only
+ * the index is read when the file is opened.
+ * </p>
+ * <pre>
+ * int     magic
+ * int     format version
+ * record* DMR encoded resources
+ * int     number of resources
+ * entry*  UTF address, int record offset, boolean has a page, int path length, UTF key and value of each path element
+ * int     offset of the number of resources
+ * </pre>
+ * <p>
+ * The file stays mapped while the model is open. A mapped file cannot be unmapped explicitly, closing the model releases
+ * the mapping, which is unmapped once the resources being read are done with it.
+ * </p>
+ */
+final class CompiledModel implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(CompiledModel.class.getPackage().getName());
+
+    /**
+     * The extension of compiled models, which replaces the {@code .dmr} extension of the model.
+     */
+    static final String EXTENSION = ".dmri";
+
+    // "WSCM"
+    private static final int MAGIC = 0x5753434D;
+    private static final int FORMAT_VERSION = 1;
+    private static final String ROOT = PathAddress.EMPTY_ADDRESS.toCLIStyleString();
+    private static final String CHILDREN = "children";
+    private static final String MODEL_DESCRIPTION = "model-description";
+    private static final String WILDCARD = "*";
+
+    private volatile MappedInput input;
+    private final Map<String, Entry> index;
+
+    private CompiledModel(final MappedInput input, final Map<String, Entry> index) {
+        this.input = input;
+        this.index = index;
+    }
+
+    /**
+     * Checks whether a file is a compiled model rather than a DMR file.
+     *
+     * @param file the file
+     *
+     * @return {@code true} if the file is a compiled model
+     *
+     * @throws IOException if the file cannot be read
+     */
+    static boolean isCompiled(final Path file) throws IOException {
+        if (Files.size(file) < 4) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return new DataInputStream(in).readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Returns the file a model is compiled to, next to the model.
+     *
+     * @param dmr the DMR file
+     *
+     * @return the compiled model
+     */
+    static Path getCompiledFile(final Path dmr) {
+        final String name = dmr.getFileName().toString();
+        return dmr.resolveSibling((name.endsWith(".dmr") ? name.substring(0, name.length() - 4) : name) + EXTENSION);
+    }
+
+    /**
+     * Compiles a DMR file. An existing compiled model is only replaced once the new one is complete.
+     *
+     * @param dmr    the DMR file
+     * @param target the compiled model to write
+     *
+     * @throws IOException if the model cannot be read or the compiled model cannot be written
+     */
+    static void compile(final Path dmr, final Path target) throws IOException {
+        final ModelNode model = new ModelNode();
+        model.readExternal(MappedInput.map(dmr));
+        final Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        final Map<String, Entry> index = new LinkedHashMap<>();
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeResource(out, index, model, new PathElement[0], true);
+                final int indexOffset = out.size();
+                out.writeInt(index.size());
+                for (Map.Entry<String, Entry> entry : index.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+                out.writeInt(indexOffset);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        LOGGER.infof("Compiled %d resources of %s into %s", index.size(), dmr, target);
+    }
+
+    /**
+     * Opens a compiled model, reading its index.
+     *
+     * @param file the compiled model
+     *
+     * @return the model
+     *
+     * @throws IOException if the file cannot be read or is not a compiled model
+     */
+    static CompiledModel open(final Path file) throws IOException {
+        final MappedInput input = MappedInput.map(file);
+        if (input.size() < 12 || input.readInt() != MAGIC) {
+            throw new IOException(String.format("%s is not a compiled model", file));
+        }
+        final int version = input.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException(String.format("%s has the unsupported format version %d", file, version));
+        }
+        input.seek(input.size() - 4);
+        input.seek(input.readInt());
+        final int size = input.readInt();
+        final Map<String, Entry> index = new LinkedHashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            final String address = input.readUTF();
+            index.put(address, Entry.read(input));
+        }
+        return new CompiledModel(input, index);
+    }
+
+    /**
+     * Returns the CLI style address of every resource in the model.
+     */
+    Set<String> getAddresses() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    /**
+     * Reads a single resource. The registrations in the {@code children} of the resource only hold their description
+     * and deprecation.
+     *
+     * @param address the address of the resource
+     *
+     * @return the resource or {@code null} if the model has no resource with the address
+     *
+     * @throws IOException if the resource cannot be read
+     */
+    ModelNode readResource(final PathAddress address) throws IOException {
+        return readResource(address.toCLIStyleString());
+    }
+
+    /**
+     * Reads a single resource. The registrations in the {@code children} of the resource only hold their description
+     * and deprecation.
+     *
+     * @param address the CLI style address of the resource
+     *
+     * @return the resource or {@code null} if the model has no resource with the address
+     *
+     * @throws IOException if the resource cannot be read
+     */
+    ModelNode readResource(final String address) throws IOException {
+        final Entry entry = index.get(address);
+        return entry == null ? null : read(entry);
+    }
+
+    /**
+     * Reads every resource which has a page, in the same cases as for a DMR file read by {@link DmrStreamReader}.
+     *
+     * @param consumer receives each resource
+     *
+     * @throws IOException if a resource cannot be read or the consumer fails
+     */
+    void read(final DmrStreamReader.ResourceConsumer consumer) throws IOException {
+        for (Entry entry : index.values()) {
+            if (entry.page) {
+                consumer.accept(entry.path, read(entry));
+            }
+        }
+    }
+
+    /**
+     * Reads the whole model, the same as decoding the DMR file it was compiled from.
+     *
+     * @return the model
+     *
+     * @throws IOException if the model cannot be read
+     */
+    ModelNode readModel() throws IOException {
+        final ModelNode root = readResource(ROOT);
+        if (root == null) {
+            throw new IOException("The compiled model has no root resource");
+        }
+        return assemble(root, new PathElement[0]);
+    }
+
+    /**
+     * Closes the model, after which no resource can be read.
+     */
+    @Override
+    public void close() {
+        input = null;
+    }
+
+    private ModelNode read(final Entry entry) throws IOException {
+        final MappedInput input = this.input;
+        if (input == null) {
+            throw new IOException("The compiled model is closed");
+        }
+        final MappedInput record = input.duplicate();
+        record.seek(entry.offset);
+        final ModelNode resource = new ModelNode();
+        resource.readExternal(record);
+        return resource;
+    }
+
+    private ModelNode assemble(final ModelNode resource, final PathElement[] path) throws IOException {
+        for (String type : getRegistrationTypes(resource)) {
+            final ModelNode registrations = resource.get(CHILDREN, type, MODEL_DESCRIPTION);
+            for (String name : registrations.keys()) {
+                final PathElement[] childPath = addToPath(path, type, name);
+                final ModelNode record = readResource(toAddress(childPath));
+                if (record != null) {
+                    registrations.get(name).set(assemble(record, childPath));
+                }
+            }
+        }
+        return resource;
+    }
+
+    private static void writeResource(final DataOutputStream out, final Map<String, Entry> index, final ModelNode resource,
+                                      final PathElement[] path, final boolean page) throws IOException {
+        final List<String> types = getRegistrationTypes(resource);
+        final String address = toAddress(path);
+        final int offset = out.size();
+        toRecord(resource, types).writeExternal(out);
+        if (index.put(address, new Entry(offset, page, path)) != null) {
+            throw new IOException(String.format("The address %s is not unique", address));
+        }
+
+        // Every registration is written, whether it has a page follows SingleVersionGenerator.getChildPages
+        for (String type : types) {
+            final ModelNode registrations = resource.get(CHILDREN, type, MODEL_DESCRIPTION);
+            boolean named = false;
+            for (String name : registrations.keys()) {
+                named |= !WILDCARD.equals(name);
+            }
+            if (!named && !registrations.has(WILDCARD)) {
+                writeResource(out, index, new ModelNode(), addToPath(path, type, WILDCARD), page);
+            }
+            for (String name : registrations.keys()) {
+                final boolean wildcard = WILDCARD.equals(name);
+                final ModelNode registration = registrations.get(name);
+                if (registration.isDefined() || wildcard && !named) {
+                    writeResource(out, index, registration, addToPath(path, type, name), page && wildcard != named);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a resource for its record, reducing its registrations to their summary. The resource is not modified.
+     */
+    private static ModelNode toRecord(final ModelNode resource, final List<String> types) {
+        if (types.isEmpty()) {
+            return resource;
+        }
+        final ModelNode record = new ModelNode();
+        for (String key : resource.keys()) {
+            record.get(key).set(resource.get(key));
+        }
+        final ModelNode children = new ModelNode();
+        for (String type : resource.get(CHILDREN).keys()) {
+            final ModelNode childType = resource.get(CHILDREN, type);
+            if (!types.contains(type)) {
+                children.get(type).set(childType);
+                continue;
+            }
+            final ModelNode summary = children.get(type);
+            summary.setEmptyObject();
+            for (String key : childType.keys()) {
+                if (MODEL_DESCRIPTION.equals(key)) {
+                    final ModelNode registrations = summary.get(key);
+                    registrations.setEmptyObject();
+                    for (String name : childType.get(key).keys()) {
+                        registrations.get(name).set(DmrStreamReader.summarize(childType.get(key, name)));
+                    }
+                } else {
+                    summary.get(key).set(childType.get(key));
+                }
+            }
+        }
+        record.get(CHILDREN).set(children);
+        return record;
+    }
+
+    /**
+     * Returns the child types of a resource which have registrations.
+     */
+    private static List<String> getRegistrationTypes(final ModelNode resource) {
+        final List<String> types = new ArrayList<>();
+        if (resource.getType() == ModelType.OBJECT && resource.hasDefined(CHILDREN) && resource.get(CHILDREN).getType() == ModelType.OBJECT) {
+            final ModelNode children = resource.get(CHILDREN);
+            for (String type : children.keys()) {
+                final ModelNode childType = children.get(type);
+                if (childType.getType() == ModelType.OBJECT && childType.has(MODEL_DESCRIPTION)
+                        && childType.get(MODEL_DESCRIPTION).getType() == ModelType.OBJECT) {
+                    types.add(type);
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Returns the CLI style address of a path, the same as {@link PathAddress#toCLIStyleString()} but without
+     * rejecting a path which repeats a key.
+     */
+    private static String toAddress(final PathElement[] path) {
+        if (path.length == 0) {
+            return ROOT;
+        }
+        final StringBuilder address = new StringBuilder();
+        for (PathElement element : path) {
+            address.append('/').append(element.getKey()).append('=').append(element.getValue());
+        }
+        return address.toString();
+    }
+
+    private static PathElement[] addToPath(final PathElement[] path, final String key, final String value) {
+        final PathElement[] newPath = new PathElement[path.length + 1];
+        System.arraycopy(path, 0, newPath, 0, path.length);
+        newPath[path.length] = new PathElement(key, value);
+        return newPath;
+    }
+
+    private static final class Entry {
+        final int offset;
+        final boolean page;
+        final PathElement[] path;
+
+        private Entry(final int offset, final boolean page, final PathElement[] path) {
+            this.offset = offset;
+            this.page = page;
+            this.path = path;
+        }
+
+        static Entry read(final MappedInput input) throws IOException {
+            final int offset = input.readInt();
+            final boolean page = input.readBoolean();
+            final PathElement[] path = new PathElement[input.readInt()];
+            for (int i = 0; i < path.length; i++) {
+                path[i] = new PathElement(input.readUTF(), input.readUTF());
+            }
+            return new Entry(offset, page, path);
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            out.writeInt(offset);
+            out.writeBoolean(page);
+            out.writeInt(path.length);
+            for (PathElement element : path) {
+                out.writeUTF(element.getKey());
+                out.writeUTF(element.getValue());
+            }
+        }
+    }
+}
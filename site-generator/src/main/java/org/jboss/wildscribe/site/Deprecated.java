@@ -57,8 +57,8 @@ public class Deprecated {
         final String since;
         if (deprecated) {
             final ModelNode dep = model.get("deprecated");
-            reason = dep.get("reason").asString();
-            since = dep.get("since").asString();
+            reason = ModelNodes.read(dep, "reason").asString();
+            since = ModelNodes.read(dep, "since").asString();
         } else {
             reason = null;
             since = null;
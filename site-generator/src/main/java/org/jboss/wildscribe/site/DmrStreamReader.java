@@ -0,0 +1,291 @@
+package org.jboss.wildscribe.site;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Path;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+
+/**
+ * Reads the resources of a DMR file one at a time instead of decoding the whole model into a single {@link ModelNode}.
+ * <p>
+ * Each resource is handed to a consumer as soon as it has been read. The registrations below a resource are read, and
+ * handed off, before the resource itself, and only their name, description and deprecation are kept in the
+ * {@code children} of the resource, which is all its page shows. Only the resources on the path from the root to the
+ * resource being read are held in memory, so the memory needed depends on the depth of the model rather than its size.
+ * </p>
+ * <p>
+ * The registrations of a child type are handed off in the same cases as for a decoded model: every named registration,
+ * or the wildcard registration if there is no named one.
+ * </p>
+ */
+final class DmrStreamReader {
+    private static final String CHILDREN = "children";
+    private static final String MODEL_DESCRIPTION = "model-description";
+    private static final String DESCRIPTION = "description";
+    private static final String DEPRECATED = "deprecated";
+    private static final String WILDCARD = "*";
+
+    private static final int OBJECT = 'o';
+    private static final int UNDEFINED = 'u';
+
+    /**
+     * Receives each resource read from the model.
+     */
+    @FunctionalInterface
+    interface ResourceConsumer {
+        void accept(PathElement[] path, ModelNode resource) throws IOException;
+    }
+
+    private final MappedInput input;
+
+    private DmrStreamReader(final MappedInput input) {
+        this.input = input;
+    }
+
+    /**
+     * Opens a DMR file.
+     *
+     * @param file the DMR file
+     *
+     * @return the reader
+     *
+     * @throws IOException if the file cannot be mapped
+     */
+    static DmrStreamReader open(final Path file) throws IOException {
+        return new DmrStreamReader(MappedInput.map(file));
+    }
+
+    /**
+     * Reads a single entry of the root resource, skipping everything else without decoding it.
+     *
+     * @param name the name of the entry
+     *
+     * @return the entry or an undefined node if the root resource does not have it
+     *
+     * @throws IOException if the model cannot be read
+     */
+    ModelNode readRootEntry(final String name) throws IOException {
+        input.seek(0);
+        if (input.peek() == OBJECT) {
+            input.skipFully(1);
+            final int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                if (name.equals(input.readUTF())) {
+                    final ModelNode value = new ModelNode();
+                    value.readExternal(input);
+                    return value;
+                }
+                skip();
+            }
+        }
+        return new ModelNode();
+    }
+
+    /**
+     * Reads every resource of the model, the root resource last.
+     *
+     * @param consumer receives each resource
+     *
+     * @throws IOException if the model cannot be read or the consumer fails
+     */
+    void read(final ResourceConsumer consumer) throws IOException {
+        input.seek(0);
+        readResource(new PathElement[0], consumer);
+    }
+
+    /**
+     * Reads a resource and hands it to the consumer.
+     *
+     * @return the summary of the resource kept by its parent
+     */
+    private ModelNode readResource(final PathElement[] path, final ResourceConsumer consumer) throws IOException {
+        final ModelNode resource = new ModelNode();
+        if (input.peek() != OBJECT) {
+            resource.readExternal(input);
+        } else {
+            input.skipFully(1);
+            resource.setEmptyObject();
+            final int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                final String key = input.readUTF();
+                if (CHILDREN.equals(key) && input.peek() == OBJECT) {
+                    readChildTypes(path, resource.get(key), consumer);
+                } else {
+                    resource.get(key).readExternal(input);
+                }
+            }
+        }
+        // The consumer may describe the resource on another thread, which adds missing keys to it
+        final ModelNode summary = summarize(resource);
+        consumer.accept(path, resource);
+        return summary;
+    }
+
+    private void readChildTypes(final PathElement[] path, final ModelNode children, final ResourceConsumer consumer) throws IOException {
+        input.skipFully(1);
+        children.setEmptyObject();
+        final int size = input.readInt();
+        for (int i = 0; i < size; i++) {
+            final String type = input.readUTF();
+            final ModelNode childType = children.get(type);
+            if (input.peek() != OBJECT) {
+                childType.readExternal(input);
+                continue;
+            }
+            input.skipFully(1);
+            childType.setEmptyObject();
+            final int keys = input.readInt();
+            for (int j = 0; j < keys; j++) {
+                final String key = input.readUTF();
+                if (MODEL_DESCRIPTION.equals(key) && input.peek() == OBJECT) {
+                    readRegistrations(path, type, childType.get(key), consumer);
+                } else {
+                    childType.get(key).readExternal(input);
+                }
+            }
+        }
+    }
+
+    private void readRegistrations(final PathElement[] path, final String type, final ModelNode registrations,
+                                   final ResourceConsumer consumer) throws IOException {
+        input.skipFully(1);
+        registrations.setEmptyObject();
+        final int size = input.readInt();
+        int wildcard = -1;
+        boolean named = false;
+        for (int i = 0; i < size; i++) {
+            final String name = input.readUTF();
+            if (WILDCARD.equals(name)) {
+                // The wildcard registration only gets a page if there is no named registration, which is only known
+                // once all of them have been read
+                wildcard = input.position();
+                registrations.get(name).set(readSummary());
+            } else {
+                named = true;
+                if (input.peek() == UNDEFINED) {
+                    registrations.get(name).readExternal(input);
+                } else {
+                    registrations.get(name).set(readResource(addToPath(path, type, name), consumer));
+                }
+            }
+        }
+        if (!named) {
+            if (wildcard < 0) {
+                consumer.accept(addToPath(path, type, WILDCARD), new ModelNode());
+            } else {
+                final int end = input.position();
+                input.seek(wildcard);
+                readResource(addToPath(path, type, WILDCARD), consumer);
+                input.seek(end);
+            }
+        }
+    }
+
+    /**
+     * Reads the summary of a registration without decoding the rest of it.
+     */
+    private ModelNode readSummary() throws IOException {
+        final ModelNode summary = new ModelNode();
+        if (input.peek() != OBJECT) {
+            summary.readExternal(input);
+            return summary;
+        }
+        input.skipFully(1);
+        summary.setEmptyObject();
+        final int size = input.readInt();
+        for (int i = 0; i < size; i++) {
+            final String key = input.readUTF();
+            if (DESCRIPTION.equals(key) || DEPRECATED.equals(key)) {
+                summary.get(key).readExternal(input);
+            } else {
+                skip();
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Returns the part of a registration shown by the page of its parent, its description and deprecation.
+     *
+     * @param registration the registration
+     *
+     * @return a copy of the summary of the registration
+     */
+    static ModelNode summarize(final ModelNode registration) {
+        if (registration.getType() != ModelType.OBJECT) {
+            return registration.clone();
+        }
+        final ModelNode summary = new ModelNode();
+        summary.setEmptyObject();
+        for (String key : registration.keys()) {
+            if (DESCRIPTION.equals(key) || DEPRECATED.equals(key)) {
+                summary.get(key).set(registration.get(key));
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Skips a value without decoding it.
+     */
+    private void skip() throws IOException {
+        final int type = input.readUnsignedByte();
+        switch (type) {
+            case 'u':
+                break;
+            case 'Z':
+            case 't':
+                input.skipFully(1);
+                break;
+            case 'I':
+                input.skipFully(4);
+                break;
+            case 'D':
+            case 'J':
+                input.skipFully(8);
+                break;
+            case 'd':
+            case 'e':
+            case 's':
+                input.skipFully(input.readUnsignedShort());
+                break;
+            case 'i':
+            case 'b':
+                input.skipFully(input.readInt());
+                break;
+            case 'S':
+                input.skipLongString();
+                break;
+            case 'l': {
+                final int size = input.readInt();
+                for (int i = 0; i < size; i++) {
+                    skip();
+                }
+                break;
+            }
+            case 'o': {
+                final int size = input.readInt();
+                for (int i = 0; i < size; i++) {
+                    input.skipFully(input.readUnsignedShort());
+                    skip();
+                }
+                break;
+            }
+            case 'p':
+                input.skipFully(input.readUnsignedShort());
+                skip();
+                break;
+            default:
+                throw new StreamCorruptedException(String.format("Invalid type %s at %d", (char) type, input.position() - 1));
+        }
+    }
+
+    private static PathElement[] addToPath(final PathElement[] path, final String key, final String value) {
+        final PathElement[] newPath = new PathElement[path.length + 1];
+        System.arraycopy(path, 0, newPath, 0, path.length);
+        newPath[path.length] = new PathElement(key, value);
+        return newPath;
+    }
+}
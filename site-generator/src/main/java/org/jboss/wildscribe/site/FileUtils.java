@@ -20,15 +20,14 @@ package org.jboss.wildscribe.site;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.CopyOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
-import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Enumeration;
 import java.util.jar.JarEntry;
@@ -62,8 +61,12 @@ class FileUtils {
         return Paths.get(path);
     }
 
-    static Path createTempDir(final String path) {
-        return Paths.get(System.getProperty("java.io.tmpdir"), path);
+    static String toHex(final byte[] bytes) {
+        final StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
     }
 
     static void delete(final Path dir, final boolean ignoreHidden) throws IOException {
@@ -91,40 +94,54 @@ class FileUtils {
         });
     }
 
-    static Path copyDirectoryFromJar(final URL resource) throws IOException {
-        final Path tmpDir = FileUtils.createTempDir("wildscribe_templates");
-        if (Files.exists(tmpDir)) {
-            delete(tmpDir, false);
-        }
-        copyDirectoryFromJar(resource, tmpDir);
-        return tmpDir;
+    /**
+     * Streams each file of the resource directory to the output.
+     *
+     * @param resource the resource directory, either in a JAR or on the file system
+     * @param output   the output to copy the files to
+     *
+     * @throws IOException if a file could not be copied
+     */
+    static void copyDirectoryFromJar(final URL resource, final SiteOutput output) throws IOException {
+        LOGGER.debugf("Copying %s to %s", resource, output.getRoot());
+        visitResources(resource, (name, in) -> output.write(output.getRoot().resolve(name), in));
     }
 
-
-    static void copyDirectoryFromJar(final URL resource, final Path dest) throws IOException {
-        LOGGER.debugf("Copying %s to %s", resource, dest);
+    /**
+     * Visits each file of a resource directory.
+     *
+     * @param resource the resource directory, either in a JAR or on the file system
+     * @param visitor  the visitor invoked with the relative name and content of each file
+     *
+     * @throws IOException if a file could not be read
+     */
+    static void visitResources(final URL resource, final ResourceVisitor visitor) throws IOException {
         if ("file".equals(resource.getProtocol())) {
             try {
                 final Path src = Paths.get(resource.toURI());
-                Files.walkFileTree(src, new CopyDirVisitor(src, dest, StandardCopyOption.REPLACE_EXISTING));
+                Files.walkFileTree(src, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                        try (InputStream in = Files.newInputStream(file)) {
+                            visitor.visit(src.relativize(file).toString().replace(File.separatorChar, '/'), in);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
             } catch (URISyntaxException e) {
                 throw new RuntimeException(e);
             }
         } else if ("jar".equals(resource.getProtocol())) {
             int endIndex = resource.getFile().indexOf('!');
-            JarFile file = new JarFile(resource.getFile().substring(5, endIndex));
-            String path = resource.getPath().substring(endIndex + 2);
-            Enumeration<JarEntry> entries = file.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                if (!entry.isDirectory()) {
-                    if (entry.getName().startsWith(path)) {
-                        LOGGER.debugf("Copying %s", entry.getName().substring(path.length() + 1));
-                        Path fileDest = dest.resolve(entry.getName().substring(path.length() + 1));
-                        if (Files.notExists(fileDest.getParent())) {
-                            Files.createDirectories(fileDest.getParent());
+            try (JarFile file = new JarFile(resource.getFile().substring(5, endIndex))) {
+                String path = resource.getPath().substring(endIndex + 2);
+                Enumeration<JarEntry> entries = file.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().startsWith(path)) {
+                        try (InputStream in = file.getInputStream(entry)) {
+                            visitor.visit(entry.getName().substring(path.length() + 1), in);
                         }
-                        Files.copy(file.getInputStream(entry), fileDest);
                     }
                 }
             }
@@ -133,31 +150,9 @@ class FileUtils {
         }
     }
 
-    private static class CopyDirVisitor extends SimpleFileVisitor<Path> {
-        private final Path fromPath;
-        private final Path toPath;
-        private final CopyOption copyOption;
-
-        CopyDirVisitor(Path fromPath, Path toPath, CopyOption copyOption) {
-            this.fromPath = fromPath;
-            this.toPath = toPath;
-            this.copyOption = copyOption;
-        }
-
-        @Override
-        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-            Path targetPath = toPath.resolve(fromPath.relativize(dir));
-            if (!Files.exists(targetPath)) {
-                Files.createDirectory(targetPath);
-            }
-            return FileVisitResult.CONTINUE;
-        }
-
-        @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-            Files.copy(file, toPath.resolve(fromPath.relativize(file)), copyOption);
-            return FileVisitResult.CONTINUE;
-        }
+    @FunctionalInterface
+    interface ResourceVisitor {
+        void visit(String name, InputStream in) throws IOException;
     }
 
 }
@@ -0,0 +1,126 @@
+package org.jboss.wildscribe.site;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.logging.Logger;
+
+/**
+ * The rendered attribute and operation sections of the resource pages of a version.
+ * <p>
+ * Many resources of a version share the same attributes or operations, for example the wildcard registrations of the
+ * datasources and messaging subsystems or the add and remove operations. Each section is keyed by a structural hash of
+ * the model it is built from, so it is rendered once and then reused by every resource with the same section.
+ * </p>
+ */
+class FragmentCache {
+    private static final Logger LOGGER = Logger.getLogger(FragmentCache.class.getPackage().getName());
+
+    /**
+     * A section of the resource page which is rendered on its own.
+     */
+    enum Fragment {
+        ATTRIBUTES("attributes", "resource-attributes.html", "attributesHtml"),
+        OPERATIONS("operations", "resource-operations.html", "operationsHtml");
+
+        private final String modelKey;
+        private final String template;
+        private final String variable;
+
+        Fragment(final String modelKey, final String template, final String variable) {
+            this.modelKey = modelKey;
+            this.template = template;
+            this.variable = variable;
+        }
+
+        /**
+         * Returns the template the section is rendered with.
+         */
+        String getTemplate() {
+            return template;
+        }
+
+        /**
+         * Returns the name of the template variable holding the rendered section.
+         */
+        String getVariable() {
+            return variable;
+        }
+    }
+
+    private final Map<String, String> fragments = new ConcurrentHashMap<>();
+    private final Map<Fragment, LongAdder> hits = new EnumMap<>(Fragment.class);
+    private final Map<Fragment, LongAdder> misses = new EnumMap<>(Fragment.class);
+
+    FragmentCache() {
+        for (Fragment fragment : Fragment.values()) {
+            hits.put(fragment, new LongAdder());
+            misses.put(fragment, new LongAdder());
+        }
+    }
+
+    /**
+     * Computes the key of a section of a resource page. This must be called before the resource is converted for the
+     * templates.
+     *
+     * @param fragment                  the section
+     * @param resource                  the resource description
+     * @param globalCapabilities        every capability of the version
+     * @param relativePathToContextRoot the relative path from the page to the root of the version
+     *
+     * @return the key
+     */
+    static String key(final Fragment fragment, final ModelNode resource, final Map<String, Capability> globalCapabilities,
+                      final String relativePathToContextRoot) {
+        final ModelHasher hasher = new ModelHasher();
+        hasher.update(fragment.name());
+        final ModelNode model = ModelNodes.read(resource, fragment.modelKey);
+        hasher.update(model);
+        // Links to the providers of referenced capabilities are relative to the page
+        if (fragment == Fragment.ATTRIBUTES && hasher.updateCapabilityReferences(model, globalCapabilities)) {
+            hasher.update(relativePathToContextRoot);
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Returns a rendered section.
+     *
+     * @param fragment the section
+     * @param key      the key of the section
+     *
+     * @return the rendered section or {@code null} if it has not been rendered yet
+     */
+    String get(final Fragment fragment, final String key) {
+        final String html = fragments.get(key);
+        (html == null ? misses : hits).get(fragment).increment();
+        return html;
+    }
+
+    /**
+     * Adds a rendered section.
+     *
+     * @param key  the key of the section
+     * @param html the rendered section
+     */
+    void put(final String key, final String html) {
+        fragments.putIfAbsent(key, html);
+    }
+
+    /**
+     * Logs the hit rate of each section.
+     *
+     * @param name the name of the version
+     */
+    void logStatistics(final String name) {
+        for (Fragment fragment : Fragment.values()) {
+            final long hit = hits.get(fragment).sum();
+            final long total = hit + misses.get(fragment).sum();
+            LOGGER.infof("Fragments %s: %s reused %d of %d (%.1f%%), %d rendered", name, fragment.modelKey, hit, total,
+                    total == 0 ? 0.0 : hit * 100.0 / total, total - hit);
+        }
+    }
+}
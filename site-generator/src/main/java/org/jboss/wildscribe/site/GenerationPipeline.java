@@ -0,0 +1,369 @@
+package org.jboss.wildscribe.site;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import freemarker.template.TemplateException;
+import org.jboss.logging.Logger;
+
+/**
+ * A staged producer/consumer pipeline used to generate pages.
+ * <p>
+ * The first stage walks a tree of items, each following stage transforms the items of the previous stage and the last
+ * stage consumes them. Every stage has its own worker threads and is fed through a bounded queue. A full queue blocks
+ * the stage feeding it, so CPU bound stages can overlap with blocking I/O without any stage running ahead of the
+ * others.
+ * </p>
+ *
+ * @param <T> the type of the items walked by the first stage
+ */
+final class GenerationPipeline<T> {
+    private static final Logger LOGGER = Logger.getLogger(GenerationPipeline.class.getPackage().getName());
+    private static final Object END = new Object();
+
+    private final String name;
+    private final int traverseThreads;
+    private final Function<T, ? extends Collection<T>> children;
+    private final List<StageDefinition> definitions;
+    private final int queueCapacity;
+
+    private GenerationPipeline(final String name, final int traverseThreads, final Function<T, ? extends Collection<T>> children,
+                               final List<StageDefinition> definitions, final int queueCapacity) {
+        this.name = name;
+        this.traverseThreads = traverseThreads;
+        this.children = children;
+        this.definitions = definitions;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Creates a builder for a pipeline.
+     *
+     * @param name the name used when reporting the pipeline metrics
+     * @param <T>  the type of the items walked by the first stage
+     *
+     * @return the builder
+     */
+    static <T> Builder<T> builder(final String name) {
+        return new Builder<>(name);
+    }
+
+    /**
+     * Runs the pipeline starting with the root item and waits for every item to pass through every stage.
+     *
+     * @param root the root of the tree to walk
+     *
+     * @throws IOException       if a stage fails with an I/O error
+     * @throws TemplateException if a stage fails to render a template
+     */
+    void run(final T root) throws IOException, TemplateException {
+        final int threads = traverseThreads + definitions.stream().mapToInt(d -> d.threads).sum();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Create the stages back to front so each stage knows where its output goes
+        Stage next = null;
+        final List<Stage> stages = new ArrayList<>();
+        for (int i = definitions.size() - 1; i >= 0; i--) {
+            next = new Stage(definitions.get(i), new ArrayBlockingQueue<>(queueCapacity), next);
+            stages.add(0, next);
+        }
+        final Traversal traversal = new Traversal(next);
+        stages.add(0, traversal);
+
+        for (Stage stage : stages) {
+            for (int i = 0; i < stage.threads; i++) {
+                executor.execute(() -> {
+                    try {
+                        stage.work();
+                    } catch (InterruptedException e) {
+                        if (failure.get() == null) {
+                            failure.compareAndSet(null, e);
+                            executor.shutdownNow();
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                        executor.shutdownNow();
+                    }
+                });
+            }
+        }
+        try {
+            traversal.start(root);
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.debugf("Waiting for pipeline %s: %s", name, stages);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the pipeline " + name, e);
+        }
+        for (Stage stage : stages) {
+            LOGGER.infof("Pipeline %s: %s", name, stage);
+        }
+        final Throwable cause = failure.get();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof TemplateException) {
+            throw (TemplateException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else if (cause != null) {
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * A function applied to each item of a stage.
+     *
+     * @param <I> the input type
+     * @param <O> the output type
+     */
+    @FunctionalInterface
+    interface StageFunction<I, O> {
+        O apply(I item) throws Exception;
+    }
+
+    /**
+     * A consumer for the items of the last stage.
+     *
+     * @param <I> the input type
+     */
+    @FunctionalInterface
+    interface StageConsumer<I> {
+        void accept(I item) throws Exception;
+    }
+
+    static final class Builder<T> {
+        private final String name;
+        private final List<StageDefinition> definitions = new ArrayList<>();
+        private int traverseThreads = 1;
+        private Function<T, ? extends Collection<T>> children;
+
+        private Builder(final String name) {
+            this.name = name;
+        }
+
+        /**
+         * Defines the first stage which walks the tree of items and passes each item to the next stage.
+         *
+         * @param threads  the number of threads walking the tree
+         * @param children resolves the children of an item, this must not modify the item
+         *
+         * @return the builder for the next stage
+         */
+        StageBuilder<T, T> traverse(final int threads, final Function<T, ? extends Collection<T>> children) {
+            this.traverseThreads = threads;
+            this.children = children;
+            return new StageBuilder<>(this);
+        }
+    }
+
+    static final class StageBuilder<T, I> {
+        private final Builder<T> builder;
+
+        private StageBuilder(final Builder<T> builder) {
+            this.builder = builder;
+        }
+
+        /**
+         * Adds a stage which transforms each item and passes the result to the next stage.
+         *
+         * @param name     the name of the stage
+         * @param threads  the number of threads for the stage
+         * @param function the function applied to each item
+         * @param <O>      the output type of the stage
+         *
+         * @return the builder for the next stage
+         */
+        @SuppressWarnings("unchecked")
+        <O> StageBuilder<T, O> stage(final String name, final int threads, final StageFunction<I, O> function) {
+            builder.definitions.add(new StageDefinition(name, threads, item -> function.apply((I) item)));
+            return new StageBuilder<>(builder);
+        }
+
+        /**
+         * Adds the last stage which consumes each item.
+         *
+         * @param name     the name of the stage
+         * @param threads  the number of threads for the stage
+         * @param consumer the consumer for each item
+         *
+         * @return the builder used to create the pipeline
+         */
+        @SuppressWarnings("unchecked")
+        StageBuilder<T, Void> sink(final String name, final int threads, final StageConsumer<I> consumer) {
+            builder.definitions.add(new StageDefinition(name, threads, item -> {
+                consumer.accept((I) item);
+                return null;
+            }));
+            return new StageBuilder<>(builder);
+        }
+
+        /**
+         * Creates the pipeline.
+         *
+         * @param queueCapacity the capacity of the queue in front of each stage
+         *
+         * @return the pipeline
+         */
+        GenerationPipeline<T> build(final int queueCapacity) {
+            if (builder.children == null) {
+                throw new IllegalStateException("No traversal defined for pipeline " + builder.name);
+            }
+            return new GenerationPipeline<>(builder.name, builder.traverseThreads, builder.children,
+                    new ArrayList<>(builder.definitions), Math.max(1, queueCapacity));
+        }
+    }
+
+    private static final class StageDefinition {
+        final String name;
+        final int threads;
+        final StageFunction<Object, Object> function;
+
+        private StageDefinition(final String name, final int threads, final StageFunction<Object, Object> function) {
+            this.name = name;
+            this.threads = Math.max(1, threads);
+            this.function = function;
+        }
+    }
+
+    private static class Stage {
+        final String name;
+        final int threads;
+        final BlockingQueue<Object> input;
+        final Stage next;
+        private final StageFunction<Object, Object> function;
+        private final AtomicInteger running;
+        final LongAdder processed = new LongAdder();
+        private final LongAdder depthTotal = new LongAdder();
+        private final LongAdder depthSamples = new LongAdder();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+        private final AtomicLong blockedNanos = new AtomicLong();
+
+        Stage(final StageDefinition definition, final BlockingQueue<Object> input, final Stage next) {
+            this(definition.name, definition.threads, input, next, definition.function);
+        }
+
+        Stage(final String name, final int threads, final BlockingQueue<Object> input, final Stage next,
+              final StageFunction<Object, Object> function) {
+            this.name = name;
+            this.threads = threads;
+            this.input = input;
+            this.next = next;
+            this.function = function;
+            this.running = new AtomicInteger(threads);
+        }
+
+        void work() throws Exception {
+            for (;;) {
+                final Object item = input.take();
+                if (item == END) {
+                    break;
+                }
+                final Object result = function.apply(item);
+                processed.increment();
+                if (next != null) {
+                    next.put(result);
+                }
+            }
+            finished();
+        }
+
+        /**
+         * Adds an item to the queue of this stage, blocking while the queue is full.
+         */
+        void put(final Object item) throws InterruptedException {
+            if (!input.offer(item)) {
+                final long start = System.nanoTime();
+                input.put(item);
+                blockedNanos.addAndGet(System.nanoTime() - start);
+            }
+            sampleDepth();
+        }
+
+        void sampleDepth() {
+            final int depth = input.size();
+            depthTotal.add(depth);
+            depthSamples.increment();
+            maxDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        void finished() throws InterruptedException {
+            if (running.decrementAndGet() == 0 && next != null) {
+                for (int i = 0; i < next.threads; i++) {
+                    next.input.put(END);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            final long samples = depthSamples.sum();
+            return String.format("stage=%s threads=%d processed=%d queue-depth[max=%d, avg=%.1f] producer-blocked=%dms",
+                    name, threads, processed.sum(), maxDepth.get(), samples == 0 ? 0.0 : (double) depthTotal.sum() / samples,
+                    TimeUnit.NANOSECONDS.toMillis(blockedNanos.get()));
+        }
+    }
+
+    /**
+     * The first stage. The queue in front of it is unbounded as it is only fed by the stage itself, the items are
+     * walked depth first to keep it small.
+     */
+    private final class Traversal extends Stage {
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private Traversal(final Stage next) {
+            super("traverse", traverseThreads, new LinkedBlockingDeque<>(), next, null);
+        }
+
+        void start(final T root) throws InterruptedException {
+            pending.set(1);
+            put(root);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void work() throws Exception {
+            final BlockingDeque<Object> deque = (BlockingDeque<Object>) input;
+            for (;;) {
+                final Object item = deque.takeFirst();
+                if (item == END) {
+                    break;
+                }
+                // Resolve the children before the item is handed off, other stages are then free to read the item
+                final Collection<T> found = children.apply((T) item);
+                pending.addAndGet(found.size());
+                for (T child : found) {
+                    deque.putFirst(child);
+                }
+                sampleDepth();
+                processed.increment();
+                next.put(item);
+                if (pending.decrementAndGet() == 0) {
+                    for (int i = 0; i < threads; i++) {
+                        deque.putLast(END);
+                    }
+                }
+            }
+            finished();
+        }
+    }
+}
@@ -17,19 +17,37 @@
 package org.jboss.wildscribe.site;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.math.BigInteger;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import freemarker.cache.ClassTemplateLoader;
+import freemarker.cache.FileTemplateLoader;
+import freemarker.cache.StrongCacheStorage;
+import freemarker.cache.TemplateLoader;
 import freemarker.template.Configuration;
-import freemarker.template.DefaultObjectWrapper;
 import freemarker.template.TemplateException;
 import freemarker.template.TemplateExceptionHandler;
 import org.jboss.dmr.ModelNode;
@@ -44,13 +62,24 @@ public class Generator {
     private static final Logger LOGGER = Logger.getLogger(Generator.class);
 
     private static final String VERSION = "versions.txt";
+    private static final String VERSION_INFO = "version-info";
+    private static final String DMR_EXTENSION = ".dmr";
+    // The product and version in the name of a model file, such as WildFly-18.0.0.Final
+    private static final Pattern MODEL_FILE_NAME = Pattern.compile("(.+?)-(\\d.*)");
+    private static final Pattern MAJOR_MINOR = Pattern.compile("\\d+\\.\\d+");
+    // The order of the products in the versions menu
+    private static final List<String> PRODUCTS = Arrays.asList(Version.WILDFLY, Version.JBOSS_EAP, Version.JBOSS_AS7);
     private static final String STATICRESOURCES = "staticresources";
+    private static final String SPA_RESOURCES = "spa";
     private static final String TEMPLATES = "templates";
+    // The templates of the source tree, when running from the site generator module
+    private static final String PREVIEW_TEMPLATES = "src/main/resources/" + TEMPLATES;
+    private static final Map<Boolean, Configuration> CONFIGURATIONS = new ConcurrentHashMap<>();
 
     /**
      * Generates a site based on the {@code modelPath} in the target directory.
      * <p>
-     * If the {@code modelPath} is a directory it must contain a file named {@code version.txt}. This file is
+     * If the {@code modelPath} is a directory it should contain a file named {@code version.txt}. This file is
      * delimited with {@code :} on each line where the first value is the product name, the second value is the version
      * and the third value is the path to the DMR file.
      * </p>
@@ -63,11 +92,16 @@ public class Generator {
      * }
      * </pre>
      * </p>
+     * <p>
+     * A directory without a {@code versions.txt} file generates a version for each model in it, named after the
+     * product name and version of the model.
+     * </p>
      *
      * @param modelPath the path to the model file or a directory with a {@code verions.txt} file
-     * @param target    the target directory to generate the site in
+     * @param target    the target directory to generate the site in, or a {@code .zip} or {@code .jar} file to
+     *                  write the site to an archive
      *
-     * @return the path to the directory the site was generated in
+     * @return the path to the directory or archive the site was generated in
      *
      * @throws IOException if an error occurs generating the site
      */
@@ -78,7 +112,7 @@ public class Generator {
     /**
      * Generates a site based on the {@code modelPath} in the target directory.
      * <p>
-     * If the {@code modelPath} is a directory it must contain a file named {@code version.txt}. This file is
+     * If the {@code modelPath} is a directory it should contain a file named {@code version.txt}. This file is
      * delimited with {@code :} on each line where the first value is the product name, the second value is the version
      * and the third value is the path to the DMR file.
      * </p>
@@ -91,6 +125,10 @@ public class Generator {
      * }
      * </pre>
      * </p>
+     * <p>
+     * A directory without a {@code versions.txt} file generates a version for each model in it, named after the
+     * product name and version of the model.
+     * </p>
      *
      * <p>
      * Note the {@code displayName} and {@code displayVersion} are only used if the {@code modulePath} is not a
@@ -98,12 +136,13 @@ public class Generator {
      * </p>
      *
      * @param modelPath      the path to the model file or a directory with a {@code verions.txt} file
-     * @param target         the target directory to generate the site in
+     * @param target         the target directory to generate the site in, or a {@code .zip} or {@code .jar} file
+     *                       to write the site to an archive
      * @param displayName    the name that should be used for the display, or {@code null} to resolve the display name
      * @param displayVersion the version that should be used for the display, or {@code null} to resolve the display
      *                       version
      *
-     * @return the path to the directory the site was generated in
+     * @return the path to the directory or archive the site was generated in
      *
      * @throws IOException if an error occurs generating the site
      */
@@ -121,7 +160,7 @@ public class Generator {
     /**
      * Generates a site based on the {@code modelPaths} in the target directory.
      * <p>
-     * If any of the {@code modelPaths} are directories they must contain a file named {@code version.txt}. This file is
+     * If any of the {@code modelPaths} are directories they should contain a file named {@code version.txt}. This file is
      * delimited with {@code :} on each line where the first value is the product name, the second value is the version
      * and the third value is the path to the DMR file.
      * </p>
@@ -134,11 +173,16 @@ public class Generator {
      * }
      * </pre>
      * </p>
+     * <p>
+     * A directory without a {@code versions.txt} file generates a version for each model in it, named after the
+     * product name and version of the model.
+     * </p>
      *
      * @param modelPaths the paths to process
-     * @param target     the target directory to generate the site in
+     * @param target     the target directory to generate the site in, or a {@code .zip} or {@code .jar} file to
+     *                   write the site to an archive
      *
-     * @return the path to the directory the site was generated in
+     * @return the path to the directory or archive the site was generated in
      *
      * @throws IOException if an error occurs generating the site
      */
@@ -149,7 +193,7 @@ public class Generator {
     /**
      * Generates a site based on the {@code modelPaths} in the target directory.
      * <p>
-     * If any of the {@code modelPaths} are directories they must contain a file named {@code version.txt}. This file is
+     * If any of the {@code modelPaths} are directories they should contain a file named {@code version.txt}. This file is
      * delimited with {@code :} on each line where the first value is the product name, the second value is the version
      * and the third value is the path to the DMR file.
      * </p>
@@ -162,6 +206,10 @@ public class Generator {
      * }
      * </pre>
      * </p>
+     * <p>
+     * A directory without a {@code versions.txt} file generates a version for each model in it, named after the
+     * product name and version of the model.
+     * </p>
      *
      * <p>
      * Note the {@code displayName} and {@code displayVersion} are only used if the module path is not a
@@ -169,12 +217,13 @@ public class Generator {
      * </p>
      *
      * @param modelPaths     the paths to process
-     * @param target         the target directory to generate the site in
+     * @param target         the target directory to generate the site in, or a {@code .zip} or {@code .jar} file
+     *                       to write the site to an archive
      * @param displayName    the name that should be used for the display, or {@code null} to resolve the display name
      * @param displayVersion the version that should be used for the display, or {@code null} to resolve the display
      *                       version
      *
-     * @return the path to the directory the site was generated in
+     * @return the path to the directory or archive the site was generated in
      *
      * @throws IOException if an error occurs generating the site
      */
@@ -200,56 +249,130 @@ public class Generator {
 
     private static Path generate(final List<Version> versions, final Path target) throws IOException {
 
-        if (Files.notExists(target)) {
-            Files.createDirectories(target);
-        } else {
-            FileUtils.delete(target, true);
-        }
-        final Path templateDir = FileUtils.copyDirectoryFromJar(getResource(TEMPLATES));
-        LOGGER.infof("Generating site in %s", target);
+        final boolean cache = GeneratorProperties.isEnabled(GeneratorProperties.CACHE);
+        final SiteOutput output = SiteOutput.create(target, cache || GeneratorProperties.isEnabled(GeneratorProperties.INCREMENTAL),
+                Precompressor.create());
+        boolean finished = false;
+        try {
+            final BuildCache buildCache = cache ? BuildCache.load(output.getRoot(), getResource(TEMPLATES)) : null;
+            LOGGER.infof("Generating site in %s", target);
 
-        FileUtils.copyDirectoryFromJar(getResource(STATICRESOURCES), target);
-        Configuration configuration = createFreemarkerConfig(templateDir);
+            FileUtils.copyDirectoryFromJar(getResource(STATICRESOURCES), output);
+            if (GeneratorProperties.isEnabled(GeneratorProperties.SPA)) {
+                // The script rendering the single page apps, shared by every version
+                FileUtils.copyDirectoryFromJar(getResource(SPA_RESOURCES), output);
+            }
+            final Configuration configuration = getConfiguration(MinifyMode.get().isTemplates());
 
-        try {
-            SiteGenerator siteGenerator = new SiteGenerator(versions, configuration, target);
-            if (versions.size() > 1) {
-                siteGenerator.createMainPage();
-                siteGenerator.createAboutPage();
-                siteGenerator.createVersions();
-            } else {
-                siteGenerator.createSingleVersion();
+            try {
+                SiteGenerator siteGenerator = new SiteGenerator(versions, configuration, output);
+                siteGenerator.setBuildCache(buildCache);
+                if (versions.size() > 1) {
+                    siteGenerator.createMainPage();
+                    siteGenerator.createAboutPage();
+                    if (buildCache != null) {
+                        siteGenerator.createVersionMenu();
+                    }
+                    siteGenerator.createVersions();
+                } else {
+                    siteGenerator.createSingleVersion();
+                }
+            } catch (TemplateException e) {
+                throw new RuntimeException(e);
+            }
+            if (buildCache != null) {
+                buildCache.store();
+            }
+            output.finish();
+            finished = true;
+        } finally {
+            if (!finished) {
+                // Releases an archive being written, the build may go on in the same JVM
+                output.abort();
             }
-        } catch (TemplateException e) {
-            throw new RuntimeException(e);
         }
         return target;
     }
 
 
+    /**
+     * Starts a server previewing the site of a model, or of a directory of models, see {@link PreviewServer}. The
+     * templates are read from the directory set with {@value GeneratorProperties#PREVIEW_TEMPLATES}, and reloaded when
+     * they change, or from the class path if there is no such directory.
+     *
+     * @param modelPath the path to the model file or a directory of models
+     * @param port      the port to listen on, {@code 0} for any free port
+     *
+     * @return the started server
+     *
+     * @throws IOException if the versions cannot be resolved or the server cannot be started
+     */
+    static PreviewServer preview(final Path modelPath, final int port) throws IOException {
+        final List<Version> versions;
+        if (Files.isDirectory(modelPath)) {
+            versions = loadVersions(modelPath);
+        } else {
+            versions = Collections.singletonList(resolveVersion(modelPath, null, null));
+        }
+        final Path dir = Paths.get(System.getProperty(GeneratorProperties.PREVIEW_TEMPLATES, PREVIEW_TEMPLATES)).toAbsolutePath().normalize();
+        final Path templates = Files.isDirectory(dir) ? dir : null;
+        final Configuration configuration;
+        Path staticResources = null;
+        if (templates != null) {
+            configuration = createFreemarkerConfig(new FileTemplateLoader(templates.toFile()), MinifyMode.get().isTemplates());
+            // Changed templates are picked up by the next page rendered
+            configuration.setTemplateUpdateDelayMilliseconds(0L);
+            if (Files.isDirectory(templates.resolveSibling(STATICRESOURCES))) {
+                staticResources = templates.resolveSibling(STATICRESOURCES);
+            }
+        } else {
+            configuration = getConfiguration(MinifyMode.get().isTemplates());
+        }
+        final String layoutHtml = versions.size() == 1 ? SiteGenerator.SINGLE_LAYOUT_HTML : SiteGenerator.DEFAULT_LAYOUT_HTML;
+        return PreviewServer.start(versions, configuration, layoutHtml, templates, staticResources,
+                GeneratorProperties.getInt(GeneratorProperties.PREVIEW_CACHE_SIZE, 64) * 1024L * 1024L, port);
+    }
+
     private static Version resolveVersion(final Path path, final String displayName, final String displayVersion) throws IOException {
         if (displayName != null && displayVersion != null) {
             return new Version(displayName, displayVersion, path.toFile());
         }
-        final ModelNode fullModel = new ModelNode();
-        try (InputStream in = Files.newInputStream(path)) {
-            fullModel.readExternal(in);
-        }
-        if (!fullModel.hasDefined("version-info")) {
+        final ModelNode model = readVersionInfo(path);
+        if (!model.isDefined()) {
             return new Version("unknown", "unknown", path.toFile());
         }
-        ModelNode model = fullModel.get("version-info");
         String productName = displayName == null ? model.get("product-name").asString() : displayName;
         String productVersion = displayVersion == null ? model.get("product-version").asString() : displayVersion;
         return new Version(productName, productVersion, path.toFile());
 
     }
 
-    private static Configuration createFreemarkerConfig(final Path templateDir) throws IOException {
+    /**
+     * Reads the {@code version-info} of a model without decoding the rest of it. The other entries of the root
+     * resource of a DMR file are skipped, and only the root resource of a compiled model is read.
+     */
+    private static ModelNode readVersionInfo(final Path path) throws IOException {
+        if (CompiledModel.isCompiled(path)) {
+            try (CompiledModel compiled = CompiledModel.open(path)) {
+                return ModelNodes.read(compiled.readResource(PathAddress.EMPTY_ADDRESS), VERSION_INFO);
+            }
+        }
+        return DmrStreamReader.open(path).readRootEntry(VERSION_INFO);
+    }
+
+    private static Configuration createFreemarkerConfig(final boolean minify) {
+        // Templates are read straight from the class path and, once parsed, kept for the life of the JVM
+        final Configuration cfg = createFreemarkerConfig(new ClassTemplateLoader(Generator.class.getClassLoader(), TEMPLATES), minify);
+        cfg.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+        return cfg;
+    }
+
+    private static Configuration createFreemarkerConfig(final TemplateLoader loader, final boolean minify) {
         final freemarker.template.Version freemakerVersion = new freemarker.template.Version(2, 3, 20);  // FreeMarker 2.3.20
         Configuration cfg = new Configuration(freemakerVersion);
-        cfg.setDirectoryForTemplateLoading(templateDir.toFile());
-        cfg.setObjectWrapper(new DefaultObjectWrapper(freemakerVersion));
+        cfg.setTemplateLoader(minify ? new MinifyingTemplateLoader(loader) : loader);
+        cfg.setCacheStorage(new StrongCacheStorage());
+        cfg.setObjectWrapper(new ViewModelObjectWrapper(freemakerVersion));
         cfg.setDefaultEncoding("UTF-8");
         cfg.setTemplateExceptionHandler(TemplateExceptionHandler.HTML_DEBUG_HANDLER);
         cfg.setURLEscapingCharset("UTF-8");
@@ -258,6 +381,9 @@ public class Generator {
 
 
     private static List<Version> loadVersions(final Path modelDir) throws IOException {
+        if (Files.notExists(modelDir.resolve(VERSION))) {
+            return discoverVersions(modelDir);
+        }
         final List<Version> ret = new ArrayList<>();
         final List<String> versions = Files.readAllLines(modelDir.resolve(VERSION), StandardCharsets.UTF_8);
         for (final String version : versions) {
@@ -267,6 +393,143 @@ public class Generator {
         return ret;
     }
 
+    /**
+     * Resolves the versions of a directory without a {@code versions.txt} file from its models. Each DMR file is a
+     * version, as is each compiled model without a DMR file next to it. The models are scanned concurrently and only
+     * for their {@code version-info}, or named after their file when it has no product name and version, for example
+     * {@code Wildfly-10.0.0.Final.dmr}. As in {@code versions.txt} the products are named as on the main page, each
+     * version is shortened to its major and minor version unless another version of the product shares them, and the
+     * versions are listed by product, newest first.
+     */
+    private static List<Version> discoverVersions(final Path modelDir) throws IOException {
+        final List<Path> models = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(modelDir)) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                if (name.endsWith(DMR_EXTENSION) || (name.endsWith(CompiledModel.EXTENSION)
+                        && Files.notExists(modelDir.resolve(name.substring(0, name.length() - CompiledModel.EXTENSION.length()) + DMR_EXTENSION)))) {
+                    models.add(file);
+                }
+            }
+        }
+        if (models.isEmpty()) {
+            throw new NoSuchFileException(modelDir.resolve(VERSION).toString(), null, "No " + VERSION + " or models found");
+        }
+        Collections.sort(models);
+        LOGGER.infof("No %s in %s, resolving the versions of %d models", VERSION, modelDir, models.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(models.size(), Runtime.getRuntime().availableProcessors()));
+        final List<Version> ret = new ArrayList<>(models.size());
+        try {
+            final List<Future<Version>> results = new ArrayList<>(models.size());
+            for (Path model : models) {
+                results.add(executor.submit(() -> discoverVersion(model)));
+            }
+            for (Future<Version> result : results) {
+                ret.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resolving versions", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        ret.sort(Comparator.comparing((Version version) -> PRODUCTS.contains(version.getProduct()) ? PRODUCTS.indexOf(version.getProduct()) : PRODUCTS.size())
+                .thenComparing(Version::getProduct)
+                .thenComparing((v1, v2) -> compareVersions(v2.getVersion(), v1.getVersion())));
+        return shortenVersions(ret);
+    }
+
+    private static Version discoverVersion(final Path path) throws IOException {
+        final ModelNode model = readVersionInfo(path);
+        final String fileName = path.getFileName().toString();
+        final String name = fileName.substring(0, fileName.lastIndexOf('.'));
+        final Matcher matcher = MODEL_FILE_NAME.matcher(name);
+        if (model.hasDefined("product-name") && model.hasDefined("product-version")) {
+            return new Version(toProduct(model.get("product-name").asString()), model.get("product-version").asString(), path.toFile());
+        } else if (matcher.matches()) {
+            return new Version(toProduct(matcher.group(1)), matcher.group(2), path.toFile());
+        }
+        return new Version(name, "unknown", path.toFile());
+    }
+
+    /**
+     * Returns the name of a product as on the main page, for the names found in models and their files such as
+     * {@code EAP}, {@code WildFly Full} or {@code JBoss-AS7}.
+     */
+    private static String toProduct(final String name) {
+        final String key = name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+        if (key.startsWith("wildfly")) {
+            return Version.WILDFLY;
+        } else if (key.equals("eap") || key.equals("jbosseap")) {
+            return Version.JBOSS_EAP;
+        } else if (key.equals("as7") || key.equals("jbossas7")) {
+            return Version.JBOSS_AS7;
+        }
+        return name;
+    }
+
+    private static List<Version> shortenVersions(final List<Version> versions) {
+        final Map<String, Integer> counts = new HashMap<>();
+        for (Version version : versions) {
+            counts.merge(version.getProduct() + ':' + shortenVersion(version.getVersion()), 1, Integer::sum);
+        }
+        final List<Version> ret = new ArrayList<>(versions.size());
+        for (Version version : versions) {
+            final String shortVersion = shortenVersion(version.getVersion());
+            if (counts.get(version.getProduct() + ':' + shortVersion) == 1) {
+                ret.add(new Version(version.getProduct(), shortVersion, version.getDmrFile()));
+            } else {
+                ret.add(version);
+            }
+        }
+        return ret;
+    }
+
+    private static String shortenVersion(final String version) {
+        final Matcher matcher = MAJOR_MINOR.matcher(version);
+        return matcher.lookingAt() ? matcher.group() : version;
+    }
+
+    /**
+     * Compares two versions, the numbers in them by their value, so {@code 10.0.0.Final} is after {@code 9.0.2.Final}.
+     */
+    private static int compareVersions(final String v1, final String v2) {
+        final String[] parts1 = v1.split("[.-]");
+        final String[] parts2 = v2.split("[.-]");
+        for (int i = 0; i < Math.min(parts1.length, parts2.length); i++) {
+            final boolean numeric1 = parts1[i].matches("\\d+");
+            final boolean numeric2 = parts2[i].matches("\\d+");
+            final int result;
+            if (numeric1 && numeric2) {
+                result = new BigInteger(parts1[i]).compareTo(new BigInteger(parts2[i]));
+            } else if (numeric1 != numeric2) {
+                result = numeric1 ? 1 : -1;
+            } else {
+                result = parts1[i].compareTo(parts2[i]);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(parts1.length, parts2.length);
+    }
+
+    /**
+     * Returns the template configuration shared by every generation in the JVM which uses the same template
+     * minification. A configuration is not changed once created, so it can be used by concurrent generations.
+     */
+    private static Configuration getConfiguration(final boolean minify) {
+        return CONFIGURATIONS.computeIfAbsent(minify, Generator::createFreemarkerConfig);
+    }
+
     private static URL getResource(final String path) {
         URL url = Generator.class.getClassLoader().getResource(path);
         if (url == null) {
@@ -0,0 +1,204 @@
+package org.jboss.wildscribe.site;
+
+/**
+ * The system properties which can be used to tune the site generation.
+ */
+final class GeneratorProperties {
+
+    /**
+     * The number of versions generated concurrently. Defaults to {@code 1}.
+     */
+    static final String PARALLELISM = "wildscribe.parallelism";
+
+    /**
+     * The number of threads rendering the resource pages of a single version. Defaults to {@code 1}.
+     */
+    static final String RENDER_PARALLELISM = "wildscribe.render.parallelism";
+
+    /**
+     * Enables the staged pipeline for generating the resource pages of a version.
+     */
+    static final String PIPELINE = "wildscribe.pipeline";
+
+    /**
+     * The capacity of the bounded queue in front of each pipeline stage. Defaults to {@code 64}.
+     */
+    static final String PIPELINE_QUEUE_CAPACITY = "wildscribe.pipeline.queue.capacity";
+
+    /**
+     * The number of threads walking the model. Defaults to {@code 1}.
+     */
+    static final String PIPELINE_TRAVERSE_THREADS = "wildscribe.pipeline.traverse.threads";
+
+    /**
+     * The number of threads building the view model of each page. Defaults to {@code 1}.
+     */
+    static final String PIPELINE_DESCRIBE_THREADS = "wildscribe.pipeline.describe.threads";
+
+    /**
+     * The number of threads processing the templates. Defaults to the number of available processors.
+     */
+    static final String PIPELINE_RENDER_THREADS = "wildscribe.pipeline.render.threads";
+
+    /**
+     * The number of threads minifying the rendered pages. Defaults to the number of available processors.
+     */
+    static final String PIPELINE_MINIFY_THREADS = "wildscribe.pipeline.minify.threads";
+
+    /**
+     * The number of threads writing the pages to disk. Defaults to {@code 2}.
+     */
+    static final String PIPELINE_WRITE_THREADS = "wildscribe.pipeline.write.threads";
+
+    /**
+     * Keeps the existing site and only writes the files which changed. Files which are no longer generated are removed.
+     */
+    static final String INCREMENTAL = "wildscribe.incremental";
+
+    /**
+     * Skips versions whose model, messages and templates have not changed since the previous run. This implies
+     * {@link #INCREMENTAL}.
+     */
+    static final String CACHE = "wildscribe.cache";
+
+    /**
+     * Renders the body of resource pages which are identical across versions only once.
+     */
+    static final String DEDUPE = "wildscribe.dedupe";
+
+    /**
+     * The maximum size, in megabytes, of the rendered bodies kept for reuse across versions.
+     */
+    static final String DEDUPE_CACHE_SIZE = "wildscribe.dedupe.cache.size";
+
+    /**
+     * Renders the attribute and operation sections shared by several resources of a version only once.
+     */
+    static final String FRAGMENTS = "wildscribe.fragments";
+
+    /**
+     * Renders the layout around the resource pages once per version and page depth instead of for every page.
+     */
+    static final String CHROME = "wildscribe.chrome";
+
+    /**
+     * Where the generated HTML is minified, one of {@code template}, {@code page}, {@code all} or {@code none}.
+     *
+     * @see MinifyMode
+     */
+    static final String MINIFY = "wildscribe.minify";
+
+    /**
+     * Writes the resources of each version as JSON rendered by a single page instead of a page for each resource.
+     */
+    static final String SPA = "wildscribe.spa";
+
+    /**
+     * Reads the model of each version one resource at a time and creates the page of each resource as soon as it has
+     * been read, instead of decoding the whole model first.
+     */
+    static final String STREAM = "wildscribe.stream";
+
+    /**
+     * Keeps the model of each version in a compact immutable tree whose strings are shared by all versions, instead of
+     * {@link org.jboss.dmr.ModelNode}s.
+     */
+    static final String COMPACT = "wildscribe.compact";
+
+    /**
+     * The number of versions whose model is loaded in the background ahead of generating them. Defaults to {@code 0},
+     * which loads each model when its version is generated.
+     */
+    static final String PREFETCH = "wildscribe.prefetch";
+
+    /**
+     * The estimated size, in megabytes, of the models loaded ahead and being generated at once. Defaults to half of the
+     * maximum heap.
+     */
+    static final String PREFETCH_BUDGET = "wildscribe.prefetch.budget";
+
+    /**
+     * The directory the preview server reads the templates from, reloading them when they change. Defaults to the
+     * templates of the source tree if the working directory is the site generator module.
+     */
+    static final String PREVIEW_TEMPLATES = "wildscribe.preview.templates";
+
+    /**
+     * The size, in megabytes, of the pages rendered by the preview server kept for reuse. Defaults to {@code 64}.
+     */
+    static final String PREVIEW_CACHE_SIZE = "wildscribe.preview.cache.size";
+
+    /**
+     * Writes a gzip compressed sibling next to each generated text file.
+     */
+    static final String PRECOMPRESS = "wildscribe.precompress";
+
+    /**
+     * The minimum size, in bytes, of a file to get a compressed sibling. Defaults to {@code 1024}.
+     */
+    static final String PRECOMPRESS_MIN_SIZE = "wildscribe.precompress.min.size";
+
+    /**
+     * The number of threads compressing the generated files. Defaults to the number of available processors.
+     */
+    static final String PRECOMPRESS_THREADS = "wildscribe.precompress.threads";
+
+    private GeneratorProperties() {
+    }
+
+    /**
+     * Resolves a thread count from a system property. The value may be a number or {@code auto} for the number of
+     * available processors.
+     *
+     * @param name         the name of the system property
+     * @param defaultValue the value used if the property is not set
+     *
+     * @return the thread count, always at least {@code 1}
+     */
+    static int getThreads(final String name, final int defaultValue) {
+        final String value = System.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return Math.max(1, defaultValue);
+        }
+        if ("auto".equalsIgnoreCase(value.trim())) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, getInt(name, value));
+    }
+
+    /**
+     * Resolves a positive integer from a system property.
+     *
+     * @param name         the name of the system property
+     * @param defaultValue the value used if the property is not set
+     *
+     * @return the value of the property
+     */
+    static int getInt(final String name, final int defaultValue) {
+        final String value = System.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return getInt(name, value);
+    }
+
+    /**
+     * Checks whether a boolean system property is enabled. An empty value is treated as {@code true}.
+     *
+     * @param name the name of the system property
+     *
+     * @return {@code true} if the property is enabled
+     */
+    static boolean isEnabled(final String name) {
+        final String value = System.getProperty(name);
+        return value != null && (value.isEmpty() || Boolean.parseBoolean(value));
+    }
+
+    private static int getInt(final String name, final String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value %s for %s", value, name), e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.jboss.wildscribe.site;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A minimal streaming writer for compact JSON, without any whitespace between the tokens.
+ * <p>
+ * The writer does not validate the structure, the caller is expected to balance the objects and arrays and to write a
+ * name before each value of an object.
+ * </p>
+ */
+final class JsonWriter {
+    private final Writer writer;
+    // Whether the next value or name is the first of the enclosing object or array
+    private boolean first = true;
+
+    JsonWriter(final Writer writer) {
+        this.writer = writer;
+    }
+
+    JsonWriter beginObject() throws IOException {
+        separate();
+        writer.write('{');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endObject() throws IOException {
+        writer.write('}');
+        first = false;
+        return this;
+    }
+
+    JsonWriter beginArray() throws IOException {
+        separate();
+        writer.write('[');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endArray() throws IOException {
+        writer.write(']');
+        first = false;
+        return this;
+    }
+
+    /**
+     * Writes the name of the next value of an object.
+     */
+    JsonWriter name(final String name) throws IOException {
+        separate();
+        string(name);
+        writer.write(':');
+        // The value follows the name without a separator
+        first = true;
+        return this;
+    }
+
+    JsonWriter value(final String value) throws IOException {
+        separate();
+        if (value == null) {
+            writer.write("null");
+        } else {
+            string(value);
+        }
+        first = false;
+        return this;
+    }
+
+    JsonWriter value(final boolean value) throws IOException {
+        separate();
+        writer.write(value ? "true" : "false");
+        first = false;
+        return this;
+    }
+
+    JsonWriter value(final long value) throws IOException {
+        separate();
+        writer.write(Long.toString(value));
+        first = false;
+        return this;
+    }
+
+    /**
+     * Writes a string value only if it is not {@code null} or empty.
+     */
+    JsonWriter optional(final String name, final String value) throws IOException {
+        if (value != null && !value.isEmpty()) {
+            name(name).value(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a boolean value only if it is {@code true}.
+     */
+    JsonWriter optional(final String name, final boolean value) throws IOException {
+        if (value) {
+            name(name).value(true);
+        }
+        return this;
+    }
+
+    private void separate() throws IOException {
+        if (!first) {
+            writer.write(',');
+        }
+        first = false;
+    }
+
+    private void string(final String value) throws IOException {
+        writer.write('"');
+        int start = 0;
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            final String escape;
+            if (c == '"') {
+                escape = "\\\"";
+            } else if (c == '\\') {
+                escape = "\\\\";
+            } else if (c == '\n') {
+                escape = "\\n";
+            } else if (c == '\r') {
+                escape = "\\r";
+            } else if (c == '\t') {
+                escape = "\\t";
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                escape = String.format("\\u%04x", (int) c);
+            } else {
+                continue;
+            }
+            writer.write(value, start, i - start);
+            writer.write(escape);
+            start = i + 1;
+        }
+        writer.write(value, start, length - start);
+        writer.write('"');
+    }
+}
@@ -1,13 +1,30 @@
 package org.jboss.wildscribe.site;
 
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 public class Main {
+    private static final String COMPILE = "--compile";
+    private static final String PREVIEW = "--preview";
 
     public static void main(final String[] args) {
         try {
+            if (args.length >= 2 && COMPILE.equals(args[0])) {
+                for (int i = 1; i < args.length; i++) {
+                    final Path dmr = Paths.get(args[i]);
+                    CompiledModel.compile(dmr, CompiledModel.getCompiledFile(dmr));
+                }
+                return;
+            }
+            if ((args.length == 2 || args.length == 3) && PREVIEW.equals(args[0])) {
+                // The server keeps running until the JVM is stopped
+                Generator.preview(Paths.get(args[1]), args.length == 3 ? Integer.parseInt(args[2]) : 8080);
+                return;
+            }
             if (args.length != 2) {
-                System.out.println("USAGE: java [-Durl=http://wildscribe.github.io] -jar site-generator.jar model-directory output-directory");
+                System.out.println("USAGE: java [-Durl=http://wildscribe.github.io] [-Dwildscribe.parallelism=N|auto] [-Dwildscribe.render.parallelism=N|auto] -jar site-generator.jar model-directory output-directory|output-archive.zip");
+                System.out.println("       java -jar site-generator.jar " + COMPILE + " model.dmr...");
+                System.out.println("       java -jar site-generator.jar " + PREVIEW + " model-directory|model.dmr [port]");
                 System.exit(1);
             }
             Generator.generate(Paths.get(args[0]), Paths.get(args[1]));
@@ -0,0 +1,344 @@
+package org.jboss.wildscribe.site;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link DataInput} which decodes a file mapped into memory.
+ * <p>
+ * The DMR and messages files are read as a long series of small values. Reading them from an unbuffered stream costs a
+ * system call for each value, while a mapped file is decoded straight from memory. The input knows its position, so a
+ * value can be skipped and read again later, and strings can be left in the file until they are needed.
+ * </p>
+ */
+final class MappedInput implements DataInput {
+    private final ByteBuffer buffer;
+
+    private MappedInput(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps a file. The file is no longer needed once it is mapped, it is only unmapped once the input is no longer
+     * referenced.
+     *
+     * @param file the file to map
+     *
+     * @return the input, positioned at the start of the file
+     *
+     * @throws IOException if the file cannot be mapped
+     */
+    static MappedInput map(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is too large to be mapped (%d bytes)", file, size));
+            }
+            return new MappedInput(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Returns an independent input over the same mapped file, positioned at its start.
+     */
+    MappedInput duplicate() {
+        return new MappedInput(buffer.duplicate());
+    }
+
+    int size() {
+        return buffer.limit();
+    }
+
+    int position() {
+        return buffer.position();
+    }
+
+    void seek(final int position) throws EOFException {
+        if (position < 0 || position > buffer.limit()) {
+            throw new EOFException();
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * Checks whether there is anything left to read.
+     */
+    boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * Returns the next byte without consuming it.
+     */
+    int peek() throws EOFException {
+        require(1);
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    /**
+     * Skips a number of bytes, failing if the file ends before.
+     */
+    void skipFully(final int n) throws EOFException {
+        require(n);
+        buffer.position(buffer.position() + n);
+    }
+
+    /**
+     * Reads a string written by {@link java.io.DataOutput#writeUTF(String)} without decoding it. The string is decoded
+     * by {@link LazyString#toString()} the first time it is needed.
+     *
+     * @return the string
+     *
+     * @throws EOFException if the file ends before the string
+     */
+    LazyString readLazyUTF() throws EOFException {
+        final int length = readUnsignedShort();
+        final int offset = buffer.position();
+        skipFully(length);
+        return new LazyString(buffer, offset, length);
+    }
+
+    @Override
+    public void readFully(final byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(final byte[] b, final int off, final int len) throws IOException {
+        require(len);
+        buffer.get(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(final int n) {
+        final int skipped = Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        require(2);
+        return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws EOFException {
+        require(2);
+        return buffer.getShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        require(2);
+        return buffer.getChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        require(4);
+        return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        require(8);
+        return buffer.getDouble();
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+        final StringBuilder line = new StringBuilder();
+        while (buffer.hasRemaining()) {
+            final char c = (char) (buffer.get() & 0xFF);
+            if (c == '\n') {
+                break;
+            }
+            if (c == '\r') {
+                if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+                    buffer.get();
+                }
+                break;
+            }
+            line.append(c);
+        }
+        return line.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        final int length = readUnsignedShort();
+        require(length);
+        final int offset = buffer.position();
+        buffer.position(offset + length);
+        return decode(buffer, offset, length);
+    }
+
+    /**
+     * Reads a string too long for {@link #readUTF()}, which {@link org.jboss.dmr.ModelNode} writes as its number of
+     * characters followed by the modified UTF-8 encoding of each character.
+     *
+     * @return the string
+     *
+     * @throws IOException if the file ends before the string or the string is malformed
+     */
+    String readLongString() throws IOException {
+        final int count = readInt();
+        final int offset = buffer.position();
+        skipChars(count);
+        return decode(buffer, offset, buffer.position() - offset);
+    }
+
+    /**
+     * Skips a string written as for {@link #readLongString()} without decoding it.
+     *
+     * @throws IOException if the file ends before the end of the string or the string is malformed
+     */
+    void skipLongString() throws IOException {
+        skipChars(readInt());
+    }
+
+    /**
+     * Skips a number of modified UTF-8 encoded characters, only reading the first byte of each.
+     */
+    private void skipChars(final int count) throws IOException {
+        if (count < 0) {
+            throw new UTFDataFormatException("Invalid string length " + count);
+        }
+        final int offset = buffer.position();
+        for (int i = 0; i < count; i++) {
+            require(1);
+            final int b = buffer.get() & 0xFF;
+            if ((b & 0xE0) == 0xC0) {
+                skipFully(1);
+            } else if ((b & 0xF0) == 0xE0) {
+                skipFully(2);
+            } else if (b >= 0x80) {
+                throw malformed(buffer.position() - offset);
+            }
+        }
+    }
+
+    private void require(final int n) throws EOFException {
+        if (n < 0 || buffer.remaining() < n) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Decodes modified UTF-8 as written by {@link java.io.DataOutput#writeUTF(String)}.
+     */
+    private static String decode(final ByteBuffer buffer, final int offset, final int length) throws UTFDataFormatException {
+        final char[] chars = new char[length];
+        final int end = offset + length;
+        int count = 0;
+        int i = offset;
+        while (i < end) {
+            final int b = buffer.get(i++) & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                if (i >= end) {
+                    throw malformed(i - offset);
+                }
+                final int b2 = continuation(buffer.get(i++), i - offset);
+                chars[count++] = (char) (((b & 0x1F) << 6) | b2);
+            } else if ((b & 0xF0) == 0xE0) {
+                if (i + 1 >= end) {
+                    throw malformed(i - offset);
+                }
+                final int b2 = continuation(buffer.get(i++), i - offset);
+                final int b3 = continuation(buffer.get(i++), i - offset);
+                chars[count++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | b3);
+            } else {
+                throw malformed(i - offset);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static int continuation(final byte b, final int index) throws UTFDataFormatException {
+        if ((b & 0xC0) != 0x80) {
+            throw malformed(index);
+        }
+        return b & 0x3F;
+    }
+
+    private static UTFDataFormatException malformed(final int index) {
+        return new UTFDataFormatException("Malformed input around byte " + index);
+    }
+
+    /**
+     * A string which is only decoded from the mapped file the first time it is needed.
+     */
+    static final class LazyString {
+        private ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+        private String value;
+
+        private LazyString(final ByteBuffer buffer, final int offset, final int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Checks whether the string is empty, without decoding it.
+         */
+        boolean isEmpty() {
+            return length == 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (value == null) {
+                try {
+                    value = decode(buffer, offset, length);
+                } catch (UTFDataFormatException e) {
+                    throw new IllegalStateException(e);
+                }
+                // The string no longer keeps the file mapped
+                buffer = null;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.jboss.wildscribe.site;
+
+import java.util.Locale;
+
+/**
+ * Where the generated HTML is minified.
+ */
+enum MinifyMode {
+    /**
+     * The templates are minified once when they are loaded, the rendered pages are not compressed again. The pages keep
+     * the line breaks of the templates, so they differ byte for byte from those compressed with {@link #PAGE}.
+     */
+    TEMPLATE(true, false),
+    /**
+     * Each rendered page is compressed, the templates are used as they are.
+     */
+    PAGE(false, true),
+    /**
+     * The templates are minified when they are loaded and each rendered page is compressed.
+     */
+    ALL(true, true),
+    /**
+     * Nothing is minified.
+     */
+    NONE(false, false);
+
+    private final boolean templates;
+    private final boolean pages;
+
+    MinifyMode(final boolean templates, final boolean pages) {
+        this.templates = templates;
+        this.pages = pages;
+    }
+
+    /**
+     * Resolves the mode from the {@value GeneratorProperties#MINIFY} system property.
+     *
+     * @return the mode, {@link #TEMPLATE} if the property is not set
+     */
+    static MinifyMode get() {
+        final String value = System.getProperty(GeneratorProperties.MINIFY);
+        if (value == null || value.isBlank()) {
+            return TEMPLATE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Invalid value %s for %s, expected one of template, page, all or none",
+                    value, GeneratorProperties.MINIFY), e);
+        }
+    }
+
+    boolean isTemplates() {
+        return templates;
+    }
+
+    boolean isPages() {
+        return pages;
+    }
+}
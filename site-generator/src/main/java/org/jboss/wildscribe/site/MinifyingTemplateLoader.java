@@ -0,0 +1,188 @@
+package org.jboss.wildscribe.site;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import freemarker.cache.TemplateLoader;
+
+/**
+ * A template loader which minifies the HTML templates of another loader as they are loaded.
+ * <p>
+ * The static text of a template is compacted the same way the pages used to be compressed after rendering: HTML
+ * comments are removed and each run of whitespace is replaced by a single character. A run containing a line break is
+ * replaced by a line break so lines which only hold FreeMarker tags are still stripped by FreeMarker. FreeMarker tags,
+ * interpolations and the content of {@code pre}, {@code textarea}, {@code script} and {@code style} elements are kept
+ * as they are. As the templates are only parsed once, the pages do not need to be compressed after rendering.
+ * </p>
+ */
+final class MinifyingTemplateLoader implements TemplateLoader {
+    private static final String[] PRESERVED_ELEMENTS = {"pre", "textarea", "script", "style"};
+
+    private final TemplateLoader delegate;
+
+    MinifyingTemplateLoader(final TemplateLoader delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object findTemplateSource(final String name) throws IOException {
+        return delegate.findTemplateSource(name);
+    }
+
+    @Override
+    public long getLastModified(final Object templateSource) {
+        return delegate.getLastModified(templateSource);
+    }
+
+    @Override
+    public Reader getReader(final Object templateSource, final String encoding) throws IOException {
+        final Reader reader = delegate.getReader(templateSource, encoding);
+        if (!templateSource.toString().endsWith(".html")) {
+            return reader;
+        }
+        final StringWriter source = new StringWriter();
+        try (Reader in = reader) {
+            in.transferTo(source);
+        }
+        return new StringReader(minify(source.toString()));
+    }
+
+    @Override
+    public void closeTemplateSource(final Object templateSource) throws IOException {
+        delegate.closeTemplateSource(templateSource);
+    }
+
+    /**
+     * Minifies the source of an HTML template.
+     *
+     * @param source the template source
+     *
+     * @return the minified source
+     */
+    static String minify(final String source) {
+        final StringBuilder result = new StringBuilder(source.length());
+        final int length = source.length();
+        int i = 0;
+        while (i < length) {
+            final char c = source.charAt(i);
+            if (c == '<') {
+                if (source.startsWith("<#--", i)) {
+                    i = skipPast(source, i, "-->");
+                    continue;
+                }
+                if (source.startsWith("<!--", i) && !source.startsWith("<!--[if", i)) {
+                    i = skipPast(source, i, "-->");
+                    continue;
+                }
+                if (source.startsWith("<#", i) || source.startsWith("</#", i) || source.startsWith("<@", i) || source.startsWith("</@", i)) {
+                    final int end = findTagEnd(source, i);
+                    result.append(source, i, end);
+                    i = end;
+                    continue;
+                }
+                final String element = preservedElement(source, i);
+                if (element != null) {
+                    final int close = indexOfIgnoreCase(source, "</" + element, i);
+                    final int end = close < 0 ? length : source.indexOf('>', close) + 1;
+                    result.append(source, i, end);
+                    i = end;
+                    continue;
+                }
+            } else if (c == '$' && source.startsWith("${", i)) {
+                final int end = findInterpolationEnd(source, i);
+                result.append(source, i, end);
+                i = end;
+                continue;
+            } else if (Character.isWhitespace(c)) {
+                boolean lineBreak = false;
+                while (i < length && Character.isWhitespace(source.charAt(i))) {
+                    lineBreak |= source.charAt(i) == '\n';
+                    i++;
+                }
+                result.append(lineBreak ? '\n' : ' ');
+                continue;
+            }
+            result.append(c);
+            i++;
+        }
+        return result.toString();
+    }
+
+    private static int skipPast(final String source, final int start, final String end) {
+        final int index = source.indexOf(end, start);
+        return index < 0 ? source.length() : index + end.length();
+    }
+
+    /**
+     * Finds the end of a FreeMarker tag. A {@code >} only closes the tag outside of string literals and parentheses.
+     */
+    private static int findTagEnd(final String source, final int start) {
+        int depth = 0;
+        for (int i = start + 1; i < source.length(); i++) {
+            final char c = source.charAt(i);
+            if (c == '"' || c == '\'') {
+                i = skipString(source, i);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '>' && depth <= 0) {
+                return i + 1;
+            }
+        }
+        return source.length();
+    }
+
+    private static int findInterpolationEnd(final String source, final int start) {
+        int depth = 0;
+        for (int i = start + 1; i < source.length(); i++) {
+            final char c = source.charAt(i);
+            if (c == '"' || c == '\'') {
+                i = skipString(source, i);
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return source.length();
+    }
+
+    /**
+     * Returns the index of the closing quote of the string literal starting at {@code start}.
+     */
+    private static int skipString(final String source, final int start) {
+        final char quote = source.charAt(start);
+        for (int i = start + 1; i < source.length(); i++) {
+            final char c = source.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i;
+            }
+        }
+        return source.length();
+    }
+
+    private static String preservedElement(final String source, final int start) {
+        for (String element : PRESERVED_ELEMENTS) {
+            final int end = start + 1 + element.length();
+            if (source.regionMatches(true, start + 1, element, 0, element.length()) && end < source.length()
+                    && (source.charAt(end) == '>' || Character.isWhitespace(source.charAt(end)))) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static int indexOfIgnoreCase(final String source, final String value, final int start) {
+        for (int i = start; i <= source.length() - value.length(); i++) {
+            if (source.regionMatches(true, i, value, 0, value.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
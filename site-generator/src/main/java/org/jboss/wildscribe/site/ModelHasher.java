@@ -0,0 +1,111 @@
+package org.jboss.wildscribe.site;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.Property;
+
+/**
+ * Computes a structural hash of parts of the management model.
+ * <p>
+ * Each value is tagged with its type and each string is length prefixed so different trees cannot produce the same
+ * input to the digest. Nodes are only read, so the model must be hashed before it is converted for the templates, which
+ * adds missing keys.
+ * </p>
+ */
+final class ModelHasher {
+    private final MessageDigest digest;
+    private final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+
+    ModelHasher() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void update(final int value) {
+        buffer.clear();
+        digest.update(buffer.putInt(value).array());
+    }
+
+    void update(final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        update(bytes.length);
+        digest.update(bytes);
+    }
+
+    void update(final ModelNode node) {
+        final ModelType type = node.getType();
+        update(type.ordinal());
+        switch (type) {
+            case UNDEFINED:
+                break;
+            case OBJECT:
+                update(node.keys().size());
+                for (String key : node.keys()) {
+                    update(key);
+                    update(node.get(key));
+                }
+                break;
+            case LIST:
+                final List<ModelNode> values = node.asList();
+                update(values.size());
+                values.forEach(this::update);
+                break;
+            case PROPERTY:
+                final Property property = node.asProperty();
+                update(property.getName());
+                update(property.getValue());
+                break;
+            default:
+                update(node.asString());
+        }
+    }
+
+    /**
+     * Adds the provider points of the global capabilities referenced by the attributes, which are rendered with the
+     * attributes.
+     *
+     * @param attributes         the attributes of a resource
+     * @param globalCapabilities every capability of the version
+     *
+     * @return {@code true} if any attribute references a known capability
+     */
+    boolean updateCapabilityReferences(final ModelNode attributes, final Map<String, Capability> globalCapabilities) {
+        if (!attributes.isDefined()) {
+            return false;
+        }
+        boolean found = false;
+        for (Property attribute : attributes.asPropertyList()) {
+            final ModelNode reference = ModelNodes.read(attribute.getValue(), "capability-reference");
+            if (reference.isDefined()) {
+                final Capability capability = globalCapabilities.get(reference.asString());
+                if (capability == null) {
+                    update(-1);
+                } else {
+                    update(capability.getProviderPoints().size());
+                    capability.getProviderPoints().forEach(this::update);
+                    found = true;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Completes the hash.
+     *
+     * @return the hash as a hex string
+     */
+    String finish() {
+        return FileUtils.toHex(digest.digest());
+    }
+}
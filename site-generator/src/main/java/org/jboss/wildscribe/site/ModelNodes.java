@@ -0,0 +1,31 @@
+package org.jboss.wildscribe.site;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Read-only helpers for the management model.
+ * <p>
+ * {@link ModelNode#get(String)} adds the key when it is missing. The resource pages may be described on several threads
+ * at once, so the resource, child type and registration nodes must only ever be read.
+ * </p>
+ */
+final class ModelNodes {
+
+    private ModelNodes() {
+    }
+
+    /**
+     * Returns the child of the node without modifying the node.
+     *
+     * @param node the node to read from
+     * @param name the name of the child
+     *
+     * @return the child or an undefined node if the child does not exist
+     */
+    static ModelNode read(final ModelNode node, final String name) {
+        if (node.has(name)) {
+            return node.get(name);
+        }
+        return new ModelNode();
+    }
+}
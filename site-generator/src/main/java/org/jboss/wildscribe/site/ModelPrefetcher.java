@@ -0,0 +1,160 @@
+package org.jboss.wildscribe.site;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Loads the models of the versions of a multi-version run ahead of generating them, within a memory budget.
+ * <p>
+ * A single thread loads the models in the order of the versions while earlier versions are generated. It stays at most
+ * a given number of versions ahead of the versions taken for generation, and only starts loading a model once its
+ * estimated size fits in the budget next to the models already loaded and not yet released. A model larger than the
+ * whole budget is only loaded once every other model has been released. Each model is released as soon as its version
+ * has been generated, so at most the budget, or a single model, is held at once.
+ * </p>
+ * <p>
+ * The size of a model is estimated from the size of its file, see {@link #estimateSize(Version)}. The budget only
+ * covers the models, not the memory used to render their pages.
+ * </p>
+ */
+final class ModelPrefetcher implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ModelPrefetcher.class.getPackage().getName());
+
+    /**
+     * Loads the model of a version.
+     */
+    @FunctionalInterface
+    interface Loader {
+        SingleVersionGenerator.LoadedModel load(Version version) throws IOException;
+    }
+
+    private final Map<Version, CompletableFuture<SingleVersionGenerator.LoadedModel>> models = new ConcurrentHashMap<>();
+    private final Map<Version, Long> sizes = new ConcurrentHashMap<>();
+    private final Semaphore ahead;
+    private final Thread thread;
+    private long available;
+    private int held;
+
+    /**
+     * Starts loading the models.
+     *
+     * @param versions the versions, in the order they are generated
+     * @param ahead    the number of models loaded before their version is taken for generation
+     * @param budget   the estimated size, in bytes, of the models held at once
+     * @param loader   loads each model
+     */
+    ModelPrefetcher(final List<Version> versions, final int ahead, final long budget, final Loader loader) {
+        this.ahead = new Semaphore(ahead);
+        this.available = budget;
+        // The loading thread keeps its own references as a version may be taken before its model is loaded
+        final List<CompletableFuture<SingleVersionGenerator.LoadedModel>> pending = new ArrayList<>(versions.size());
+        for (Version version : versions) {
+            final CompletableFuture<SingleVersionGenerator.LoadedModel> model = new CompletableFuture<>();
+            models.put(version, model);
+            pending.add(model);
+        }
+        thread = new Thread(() -> {
+            for (int i = 0; i < versions.size(); i++) {
+                final Version version = versions.get(i);
+                final CompletableFuture<SingleVersionGenerator.LoadedModel> model = pending.set(i, null);
+                try {
+                    this.ahead.acquire();
+                    final long size = estimateSize(version);
+                    reserve(size);
+                    sizes.put(version, size);
+                    final long start = System.nanoTime();
+                    model.complete(loader.load(version));
+                    LOGGER.debugf("Loaded %s %s ahead in %d ms", version.getProduct(), version.getVersion(), (System.nanoTime() - start) / 1000000);
+                } catch (InterruptedException e) {
+                    model.completeExceptionally(new InterruptedIOException("Interrupted while loading " + version.getProduct() + " " + version.getVersion()));
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    model.completeExceptionally(e);
+                }
+            }
+        }, "wildscribe-prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Estimates the memory used by the model of a version from the size of its file. On the models of the project a
+     * decoded model takes about seven times the size of its file and a compact model about as much as its file, the
+     * estimates round both up.
+     *
+     * @param version the version
+     *
+     * @return the estimated size in bytes
+     */
+    static long estimateSize(final Version version) {
+        final long fileSize = version.getDmrFile().length();
+        return GeneratorProperties.isEnabled(GeneratorProperties.COMPACT) ? fileSize * 3 / 2 : fileSize * 8;
+    }
+
+    /**
+     * Waits for the model of a version. The model must be {@linkplain #release(Version) released} once the version has
+     * been generated.
+     *
+     * @param version the version
+     *
+     * @return the model
+     *
+     * @throws IOException if the model could not be loaded
+     */
+    SingleVersionGenerator.LoadedModel take(final Version version) throws IOException {
+        // The prefetcher no longer references the model once it is taken
+        final CompletableFuture<SingleVersionGenerator.LoadedModel> model = models.remove(version);
+        try {
+            return model.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + version.getProduct() + " " + version.getVersion());
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw (RuntimeException) cause;
+        } finally {
+            ahead.release();
+        }
+    }
+
+    /**
+     * Releases the model of a version once the version has been generated, so the next models can be loaded.
+     *
+     * @param version the version
+     */
+    void release(final Version version) {
+        final Long size = sizes.remove(version);
+        if (size != null) {
+            synchronized (this) {
+                available += size;
+                held--;
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void reserve(final long size) throws InterruptedException {
+        while (held > 0 && available < size) {
+            wait();
+        }
+        available -= size;
+        held++;
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+}
@@ -77,10 +77,7 @@ public class Operation implements Comparable<Operation> {
             String returnType = replyProperties.get("type").asString();
             String returnDescription = replyProperties.get("description").asString("");
             ModelNode returnValueType = replyProperties.get("value-type");
-            StringWriter writer = new StringWriter();
-            returnValueType.writeString(new PrintWriter(writer), false);
-            String valueType = writer.toString();
-            r = new Reply(returnType, returnValueType.isDefined() ? valueType : null, returnDescription);
+            r = new Reply(returnType, returnValueType.isDefined() ? returnValueType : null, returnDescription);
         }
 
 
@@ -174,7 +171,9 @@ public class Operation implements Comparable<Operation> {
     }
     public static final class Reply{
         private final String type;
-        private final String valueType;
+        private String valueType;
+        // The value type which is only formatted once a page shows it
+        private ModelNode valueTypeModel;
         private final String description;
 
         public Reply(String type, String valueType, String description) {
@@ -183,11 +182,23 @@ public class Operation implements Comparable<Operation> {
             this.description = description;
         }
 
+        Reply(String type, ModelNode valueType, String description) {
+            this.type = type;
+            this.valueTypeModel = valueType;
+            this.description = description;
+        }
+
         public String getType() {
             return type;
         }
 
         public String getValueType() {
+            if (valueTypeModel != null) {
+                StringWriter writer = new StringWriter();
+                valueTypeModel.writeString(new PrintWriter(writer), false);
+                valueType = writer.toString();
+                valueTypeModel = null;
+            }
             return valueType;
         }
 
@@ -0,0 +1,188 @@
+package org.jboss.wildscribe.site;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a gzip compressed sibling next to each generated text file, so a static web server can serve the site
+ * compressed without compressing it on the fly.
+ * <p>
+ * The files are compressed on their own threads while the generation continues. The gzip header written by the JDK has
+ * no timestamp or file name, so the same content always compresses to the same bytes and unchanged siblings are not
+ * written again in incremental mode. Files smaller than the minimum size, or which do not get smaller, have no sibling.
+ * </p>
+ */
+class Precompressor {
+    static final String SUFFIX = ".gz";
+
+    private static final Set<String> EXTENSIONS = Set.of("html", "css", "js", "json", "svg", "xml", "txt", "ico");
+    private static final int DEFAULT_MIN_SIZE = 1024;
+
+    private final int minSize;
+    private final ExecutorService executor;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private Precompressor(final int minSize, final int threads) {
+        this.minSize = minSize;
+        this.executor = Executors.newFixedThreadPool(threads, new CompressorThreadFactory());
+    }
+
+    /**
+     * Creates the compressor configured by the {@value GeneratorProperties#PRECOMPRESS} system properties.
+     *
+     * @return the compressor or {@code null} if pre-compression is not enabled
+     */
+    static Precompressor create() {
+        if (!GeneratorProperties.isEnabled(GeneratorProperties.PRECOMPRESS)) {
+            return null;
+        }
+        return new Precompressor(getMinSize(), GeneratorProperties.getThreads(GeneratorProperties.PRECOMPRESS_THREADS,
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Describes the settings which change the generated siblings, used to fingerprint the generated site.
+     *
+     * @return the description of the settings
+     */
+    static String describe() {
+        return GeneratorProperties.isEnabled(GeneratorProperties.PRECOMPRESS) ? "gzip:" + getMinSize() : "";
+    }
+
+    /**
+     * Returns the compressed sibling of a file.
+     *
+     * @param file the file
+     *
+     * @return the sibling
+     */
+    static Path sibling(final Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Checks whether the file is a kind of file which gets a compressed sibling.
+     *
+     * @param file the file
+     *
+     * @return {@code true} if the file should be compressed
+     */
+    boolean accepts(final Path file) {
+        final String name = file.getFileName().toString();
+        final int index = name.lastIndexOf('.');
+        return index > 0 && EXTENSIONS.contains(name.substring(index + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Compresses a file which has been completely written. The sibling is written to the output once compressed.
+     *
+     * @param file   the file to compress
+     * @param output the output the sibling is written to
+     */
+    void submit(final Path file, final SiteOutput output) {
+        executor.execute(() -> {
+            if (failure.get() != null) {
+                return;
+            }
+            try {
+                final byte[] compressed = compress(file);
+                if (compressed != null) {
+                    output.write(sibling(file), compressed);
+                }
+            } catch (IOException e) {
+                failure.compareAndSet(null, new UncheckedIOException("Failed to compress " + file, e));
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+    }
+
+    /**
+     * Waits for every submitted file to be compressed and stops the compression threads.
+     *
+     * @throws IOException if a file could not be compressed
+     */
+    void finish() throws IOException {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keep waiting, every task completes once its file is compressed
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing the site", e);
+        }
+        final Throwable cause = failure.get();
+        if (cause instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) cause).getCause();
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Stops the compression threads without waiting for the submitted files, once the generation has failed.
+     */
+    void abort() {
+        executor.shutdownNow();
+    }
+
+    private byte[] compress(final Path file) throws IOException {
+        return compress(Files.readAllBytes(file));
+    }
+
+    /**
+     * Compresses the content of a file in the calling thread.
+     *
+     * @param content the content of the file
+     *
+     * @return the compressed content or {@code null} if the file does not get a compressed sibling
+     *
+     * @throws IOException if the content could not be compressed
+     */
+    byte[] compress(final byte[] content) throws IOException {
+        if (content.length < minSize) {
+            return null;
+        }
+        final ByteArrayOutputStream result = new ByteArrayOutputStream(content.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(result, 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(content);
+        }
+        return result.size() < content.length ? result.toByteArray() : null;
+    }
+
+    private static int getMinSize() {
+        return Math.max(0, GeneratorProperties.getInt(GeneratorProperties.PRECOMPRESS_MIN_SIZE, DEFAULT_MIN_SIZE));
+    }
+
+    private static class CompressorThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "wildscribe-compress-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
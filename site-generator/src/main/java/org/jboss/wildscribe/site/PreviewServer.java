@@ -0,0 +1,441 @@
+package org.jboss.wildscribe.site;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+import org.jboss.dmr.ModelNode;
+import org.jboss.logging.Logger;
+
+/**
+ * Serves the site of one or more versions from memory, rendering each resource page when it is first requested instead
+ * of generating the whole site.
+ * <p>
+ * The URLs are those of the generated site. The address of a resource is resolved from the URL of its page by walking
+ * the model from the root, so only the requested page is described and rendered. The model of a version is loaded when
+ * one of its pages is first requested, a compiled model only reads the resources of the requested pages. The rendered
+ * pages are kept in a cache of bounded size, the least recently used pages are evicted first.
+ * </p>
+ * <p>
+ * When the templates are read from a directory they are reloaded once they change, and the cached pages are discarded.
+ * The main and about pages of a multi-version site are not served, the root of the site redirects to the first version.
+ * </p>
+ */
+final class PreviewServer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(PreviewServer.class.getPackage().getName());
+
+    private static final String STATICRESOURCES = "staticresources";
+    // The minimum time between two checks of the templates, each check walks the whole template directory
+    private static final long TEMPLATES_CHECK_INTERVAL = TimeUnit.SECONDS.toNanos(1L);
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "html", "text/html; charset=UTF-8",
+            "css", "text/css; charset=UTF-8",
+            "js", "application/javascript; charset=UTF-8",
+            "json", "application/json; charset=UTF-8",
+            "ico", "image/x-icon",
+            "png", "image/png",
+            "svg", "image/svg+xml");
+
+    private final List<Version> versions;
+    private final Configuration configuration;
+    private final String layoutHtml;
+    private final Path templates;
+    private final Path staticResources;
+    private final BoundedStringCache pages;
+    private final Map<Version, PreviewModel> models = new ConcurrentHashMap<>();
+    private final Map<Version, SingleVersionGenerator> generators = new ConcurrentHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private long templatesModified;
+    private long templatesChecked;
+    // Incremented each time the rendered pages are discarded, a page rendered before is not cached
+    private long generation;
+
+    private PreviewServer(final List<Version> versions, final Configuration configuration, final String layoutHtml, final Path templates,
+                          final Path staticResources, final long cacheSize, final HttpServer server) throws IOException {
+        this.versions = versions;
+        this.configuration = configuration;
+        this.layoutHtml = layoutHtml;
+        this.templates = templates;
+        this.staticResources = staticResources;
+        this.pages = new BoundedStringCache(cacheSize);
+        this.server = server;
+        this.templatesModified = getTemplatesModified();
+        this.templatesChecked = System.nanoTime();
+        this.executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param versions        the versions served, a single version is served as a single version site
+     * @param configuration   the template configuration
+     * @param layoutHtml      the layout of the pages
+     * @param templates       the directory the templates are read from, or {@code null} if they are read from the class
+     *                        path and never change
+     * @param staticResources the directory the static resources are read from, or {@code null} to read them from the
+     *                        class path
+     * @param cacheSize       the approximate maximum size in bytes of the rendered pages kept
+     * @param port            the port, {@code 0} for any free port
+     *
+     * @return the started server
+     *
+     * @throws IOException if the server cannot be started
+     */
+    static PreviewServer start(final List<Version> versions, final Configuration configuration, final String layoutHtml, final Path templates,
+                               final Path staticResources, final long cacheSize, final int port) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        final PreviewServer preview = new PreviewServer(versions, configuration, layoutHtml, templates, staticResources, cacheSize, server);
+        server.start();
+        LOGGER.infof("Previewing %d versions at http://localhost:%d/", versions.size(), preview.getPort());
+        if (templates != null) {
+            LOGGER.infof("Reloading the templates from %s when they change", templates);
+        }
+        return preview;
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        for (PreviewModel model : models.values()) {
+            model.close();
+        }
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "text/plain; charset=UTF-8", "Method not allowed".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            final String path = exchange.getRequestURI().getPath();
+            if (versions.size() > 1 && (path.equals("/") || path.equals("/" + SiteGenerator.INDEX_HTML))) {
+                final Version first = versions.get(0);
+                exchange.getResponseHeaders().set("Location", toUrl(first.getProduct(), first.getVersion(), SiteGenerator.INDEX_HTML));
+                send(exchange, 302, null, new byte[0]);
+                return;
+            }
+            checkTemplates();
+            String page = pages.get(path);
+            if (page == null) {
+                final long start = System.nanoTime();
+                final long renderGeneration = getGeneration();
+                page = render(path);
+                if (page != null) {
+                    cache(path, page, renderGeneration);
+                    LOGGER.debugf("Rendered %s in %d ms", path, (System.nanoTime() - start) / 1000000);
+                }
+            }
+            if (page != null) {
+                send(exchange, 200, CONTENT_TYPES.get("html"), page.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            final byte[] resource = readStaticResource(path);
+            if (resource == null) {
+                send(exchange, 404, "text/plain; charset=UTF-8", ("Not found: " + path).getBytes(StandardCharsets.UTF_8));
+            } else {
+                final String extension = path.substring(path.lastIndexOf('.') + 1);
+                send(exchange, 200, CONTENT_TYPES.getOrDefault(extension, "application/octet-stream"), resource);
+            }
+        } catch (IOException | TemplateException | RuntimeException e) {
+            LOGGER.errorf(e, "Failed to serve %s", exchange.getRequestURI());
+            send(exchange, 500, "text/plain; charset=UTF-8", String.valueOf(e).getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final String contentType, final byte[] body) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        final boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, head || body.length == 0 ? -1 : body.length);
+        if (!head && body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Renders the page with a URL, relative to the root of the site.
+     *
+     * @return the page or {@code null} if the URL is not the URL of a page
+     */
+    private String render(final String path) throws IOException, TemplateException {
+        final List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        final Version version;
+        if (versions.size() == 1) {
+            version = versions.get(0);
+        } else if (segments.size() >= 2) {
+            version = findVersion(segments.get(0), segments.get(1));
+            segments.subList(0, 2).clear();
+        } else {
+            version = null;
+        }
+        if (version == null) {
+            return null;
+        }
+        if (segments.size() == 1 && segments.get(0).equals(SingleVersionGenerator.LOG_MESSAGE_REFERENCE_HTML)) {
+            return getGenerator(version).renderLogMessagePage();
+        }
+        if (!segments.isEmpty() && segments.get(segments.size() - 1).equals(SiteGenerator.INDEX_HTML)) {
+            segments.remove(segments.size() - 1);
+        } else if (!path.endsWith("/")) {
+            return null;
+        }
+        final PreviewModel model = getModel(version);
+        final PathElement[] address = model.resolve(segments);
+        if (address == null) {
+            return null;
+        }
+        return getGenerator(version).renderResourcePage(address, model.readResource(address));
+    }
+
+    private Version findVersion(final String product, final String version) {
+        for (Version candidate : versions) {
+            if (candidate.getProduct().equals(product) && candidate.getVersion().equals(version)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private PreviewModel getModel(final Version version) throws IOException {
+        PreviewModel model = models.get(version);
+        if (model == null) {
+            synchronized (models) {
+                model = models.get(version);
+                if (model == null) {
+                    final long start = System.nanoTime();
+                    model = PreviewModel.load(version);
+                    models.put(version, model);
+                    LOGGER.infof("Loaded %s %s in %d ms", version.getProduct(), version.getVersion(), (System.nanoTime() - start) / 1000000);
+                }
+            }
+        }
+        return model;
+    }
+
+    private SingleVersionGenerator getGenerator(final Version version) throws IOException {
+        final PreviewModel model = getModel(version);
+        return generators.computeIfAbsent(version, v -> {
+            final SingleVersionGenerator gen = new SingleVersionGenerator(versions.size() == 1 ? null : versions, v, configuration, null, layoutHtml);
+            gen.setSingle(versions.size() == 1);
+            gen.prepare(model.capabilities);
+            return gen;
+        });
+    }
+
+    /**
+     * Discards the rendered pages once a template has changed. The generators are discarded as well, as they may hold
+     * parts of rendered pages. The templates are checked at most once every {@link #TEMPLATES_CHECK_INTERVAL}.
+     */
+    private void checkTemplates() throws IOException {
+        if (templates == null) {
+            return;
+        }
+        synchronized (this) {
+            final long now = System.nanoTime();
+            if (now - templatesChecked < TEMPLATES_CHECK_INTERVAL) {
+                return;
+            }
+            templatesChecked = now;
+        }
+        final long modified = getTemplatesModified();
+        synchronized (this) {
+            if (modified != templatesModified) {
+                LOGGER.info("The templates changed, discarding the rendered pages");
+                templatesModified = modified;
+                generation++;
+                generators.clear();
+                pages.clear();
+            }
+        }
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches a rendered page, unless the rendered pages were discarded while it was rendered.
+     */
+    private synchronized void cache(final String path, final String page, final long renderGeneration) {
+        if (renderGeneration == generation) {
+            pages.put(path, page);
+        }
+    }
+
+    private long getTemplatesModified() throws IOException {
+        if (templates == null) {
+            return 0L;
+        }
+        long modified = 0L;
+        try (Stream<Path> files = Files.walk(templates)) {
+            for (Iterator<Path> iterator = files.iterator(); iterator.hasNext(); ) {
+                modified = Math.max(modified, Files.getLastModifiedTime(iterator.next()).toMillis());
+            }
+        }
+        return modified;
+    }
+
+    private byte[] readStaticResource(final String path) throws IOException {
+        final String name = path.startsWith("/") ? path.substring(1) : path;
+        if (name.isEmpty() || name.contains("..")) {
+            return null;
+        }
+        if (staticResources != null) {
+            final Path file = staticResources.resolve(name).normalize();
+            return file.startsWith(staticResources) && Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+        }
+        try (InputStream in = PreviewServer.class.getClassLoader().getResourceAsStream(STATICRESOURCES + '/' + name)) {
+            return in == null ? null : in.readAllBytes();
+        }
+    }
+
+    private static String toUrl(final String... segments) {
+        try {
+            return new URI(null, null, "/" + String.join("/", segments), null).getRawPath();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * The model of a version, read as the pages are rendered. A compiled model stays open until the server is closed.
+     */
+    private static final class PreviewModel {
+        private static final String CHILDREN = "children";
+        private static final String MODEL_DESCRIPTION = "model-description";
+
+        private final CompiledModel compiled;
+        private final SingleVersionGenerator.LoadedModel loaded;
+        private final CapabilityIndex capabilities;
+
+        private PreviewModel(final CompiledModel compiled, final SingleVersionGenerator.LoadedModel loaded, final CapabilityIndex capabilities) {
+            this.compiled = compiled;
+            this.loaded = loaded;
+            this.capabilities = capabilities;
+        }
+
+        /**
+         * Loads the model of a version. Only the index of a compiled model is read.
+         */
+        static PreviewModel load(final Version version) throws IOException {
+            final Path dmrFile = version.getDmrFile().toPath();
+            if (CompiledModel.isCompiled(dmrFile)) {
+                final CompiledModel compiled = CompiledModel.open(dmrFile);
+                final ModelNode root = compiled.readResource(PathAddress.EMPTY_ADDRESS);
+                return new PreviewModel(compiled, null, CapabilityIndex.fromModel(ModelNodes.read(root, "possible-capabilities")));
+            }
+            final SingleVersionGenerator.LoadedModel loaded = SingleVersionGenerator.load(version, null);
+            return new PreviewModel(null, loaded, loaded.capabilities);
+        }
+
+        void close() {
+            if (compiled != null) {
+                compiled.close();
+            }
+        }
+
+        /**
+         * Resolves the URL of a resource page, relative to the root of the version, to the address of the resource.
+         * Each child type is followed by the name of the registration, unless the type only has a wildcard
+         * registration, which is the same as when the pages are generated.
+         *
+         * @param segments the segments of the URL
+         *
+         * @return the address or {@code null} if the model has no page with the URL
+         */
+        PathElement[] resolve(final List<String> segments) throws IOException {
+            final List<PathElement> path = new ArrayList<>();
+            ModelNode resource = readResource(new PathElement[0]);
+            int i = 0;
+            while (i < segments.size()) {
+                final String type = segments.get(i++);
+                final ModelNode modelDescription = ModelNodes.read(ModelNodes.read(ModelNodes.read(resource, CHILDREN), type), MODEL_DESCRIPTION);
+                if (!modelDescription.isDefined()) {
+                    return null;
+                }
+                boolean named = false;
+                for (String name : modelDescription.keys()) {
+                    named |= !name.equals(PathElement.WILDCARD_VALUE);
+                }
+                final String name;
+                if (named) {
+                    if (i == segments.size() || !modelDescription.hasDefined(segments.get(i))) {
+                        return null;
+                    }
+                    name = segments.get(i++);
+                } else if (modelDescription.hasDefined(PathElement.WILDCARD_VALUE)) {
+                    name = PathElement.WILDCARD_VALUE;
+                } else {
+                    return null;
+                }
+                path.add(new PathElement(type, name));
+                resource = readResource(path.toArray(new PathElement[0]));
+                if (resource == null) {
+                    return null;
+                }
+            }
+            return path.toArray(new PathElement[0]);
+        }
+
+        /**
+         * Reads a resource of the model.
+         *
+         * @return the resource or {@code null} if the model has no resource with the address
+         */
+        ModelNode readResource(final PathElement[] path) throws IOException {
+            if (compiled != null) {
+                return compiled.readResource(PathAddress.pathAddress(path));
+            }
+            if (loaded.compact != null) {
+                CompactNode resource = loaded.compact;
+                for (PathElement element : path) {
+                    resource = resource.get(CHILDREN).get(element.getKey()).get(MODEL_DESCRIPTION).get(element.getValue());
+                }
+                return resource.isDefined() ? resource.toResourceModel() : null;
+            }
+            ModelNode resource = loaded.model;
+            for (PathElement element : path) {
+                resource = ModelNodes.read(ModelNodes.read(ModelNodes.read(ModelNodes.read(resource, CHILDREN), element.getKey()), MODEL_DESCRIPTION), element.getValue());
+            }
+            return resource.isDefined() ? resource : null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.jboss.wildscribe.site;
+
+import static org.jboss.wildscribe.site.SiteGenerator.INDEX_HTML;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The address of a resource page, linked to the address of its parent page.
+ * <p>
+ * The URL, CLI style address, breadcrumbs and relative path to the root of the site of a page are each computed once,
+ * from those of its parent, instead of from the root for every page. The breadcrumbs of a page share the breadcrumbs of
+ * its ancestors. Unlike {@link PathAddress#pathAddress(List)} the elements are not checked for duplicate keys.
+ * </p>
+ */
+final class ResourceAddress extends PathAddress {
+    private final ResourceAddress parent;
+    private final PathElement[] path;
+    private final String url;
+    private final String cliString;
+    private final String relativePathToContextRoot;
+    private final Breadcrumb[] breadcrumbs;
+
+    private ResourceAddress(final ResourceAddress parent, final PathElement[] path, final String url, final String cliString,
+                            final String relativePathToContextRoot, final Breadcrumb breadcrumb) {
+        super(Collections.unmodifiableList(Arrays.asList(path)));
+        this.parent = parent;
+        this.path = path;
+        this.url = url;
+        this.cliString = cliString;
+        this.relativePathToContextRoot = relativePathToContextRoot;
+        if (parent == null) {
+            this.breadcrumbs = new Breadcrumb[] {breadcrumb};
+        } else {
+            this.breadcrumbs = Arrays.copyOf(parent.breadcrumbs, parent.breadcrumbs.length + 1);
+            this.breadcrumbs[parent.breadcrumbs.length] = breadcrumb;
+        }
+    }
+
+    /**
+     * Creates the address of the root resource.
+     *
+     * @param label the label of the breadcrumb of the root page
+     *
+     * @return the address
+     */
+    static ResourceAddress root(final String label) {
+        return new ResourceAddress(null, new PathElement[0], "", "/", "", new Breadcrumb(label, INDEX_HTML));
+    }
+
+    /**
+     * Creates the address of a child of this resource.
+     *
+     * @param key   the child type
+     * @param value the name of the registration
+     *
+     * @return the address
+     */
+    ResourceAddress child(final String key, final String value) {
+        final PathElement element = new PathElement(key, value);
+        final PathElement[] childPath = Arrays.copyOf(path, path.length + 1);
+        childPath[path.length] = element;
+        final String segment = element.isWildcard() ? element.getKey() : element.getKey() + '/' + element.getValue();
+        final String childUrl = url.isEmpty() ? segment : url + '/' + segment;
+        final String childCliString = (path.length == 0 ? "" : cliString) + '/' + element.getKey() + '=' + element.getValue();
+        // One level up for each directory the segment adds to the URL
+        final String childRelativePath = relativePathToContextRoot + (element.isWildcard() ? "../" : "../../");
+        final String label = element.getKey() + (element.isWildcard() ? "" : ("=" + element.getValue()));
+        return new ResourceAddress(this, childPath, childUrl, childCliString, childRelativePath,
+                new Breadcrumb(label, childUrl + '/' + INDEX_HTML));
+    }
+
+    /**
+     * Resolves the address of a path, reusing the ancestors it has in common with this address.
+     *
+     * @param other the path to resolve
+     *
+     * @return the address of the path
+     */
+    ResourceAddress resolve(final PathElement[] other) {
+        ResourceAddress common = this;
+        while (common.path.length > other.length || !isPrefix(common.path, other)) {
+            common = common.parent;
+        }
+        ResourceAddress result = common;
+        for (int i = common.path.length; i < other.length; i++) {
+            result = result.child(other[i].getKey(), other[i].getValue());
+        }
+        return result;
+    }
+
+    private static boolean isPrefix(final PathElement[] prefix, final PathElement[] path) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (!prefix[i].equals(path[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the elements of the address. The array is shared and must not be modified.
+     */
+    PathElement[] getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the URL of the page relative to the root of the version, without a trailing separator.
+     */
+    String getUrl() {
+        return url;
+    }
+
+    String getRelativePathToContextRoot() {
+        return relativePathToContextRoot;
+    }
+
+    /**
+     * Returns the breadcrumbs of the page, from the root of the version to the page itself.
+     */
+    List<Breadcrumb> getBreadcrumbs() {
+        return Collections.unmodifiableList(Arrays.asList(breadcrumbs));
+    }
+
+    @Override
+    public String toCLIStyleString() {
+        return cliString;
+    }
+}
@@ -0,0 +1,150 @@
+package org.jboss.wildscribe.site;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.Property;
+import org.jboss.logging.Logger;
+
+/**
+ * A cache of rendered resource page bodies shared by every version of a site.
+ * <p>
+ * Every page contains its version in the title, the breadcrumbs and the versions menu, so pages of different versions
+ * are never identical. The body of the page, everything after the breadcrumbs, only depends on the resource
+ * description and its position in the tree. Many resources are identical across consecutive versions, so the body is
+ * keyed by a content hash of the resource as seen by {@link ResourceDescription#fromModelNode} along with the page
+ * context, and rendered only once.
+ * </p>
+ */
+class ResourceBodyCache {
+    private static final Logger LOGGER = Logger.getLogger(ResourceBodyCache.class.getPackage().getName());
+
+    private final BoundedStringCache bodies;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxBytes the approximate maximum size of the cached bodies, the least recently used bodies are evicted
+     *                 when the size is exceeded
+     */
+    ResourceBodyCache(final long maxBytes) {
+        this.bodies = new BoundedStringCache(maxBytes);
+    }
+
+    /**
+     * Computes the key for the body of a resource page.
+     * <p>
+     * The hash covers each entry of the resource except its children, which only contribute what
+     * {@link Child#fromProperty} reads. The capabilities are hashed as resolved for the page since their provider
+     * points depend on the rest of the model.
+     * </p>
+     *
+     * @param resource                  the resource description
+     * @param capabilities              the capabilities of the resource resolved for the page
+     * @param globalCapabilities        every capability of the version
+     * @param relativePathToContextRoot the relative path from the page to the root of the version
+     * @param hasLogs                   whether the page links to the log messages
+     *
+     * @return the key
+     */
+    static String key(final ModelNode resource, final List<Capability> capabilities, final Map<String, Capability> globalCapabilities,
+                      final String relativePathToContextRoot, final boolean hasLogs) {
+        final ModelHasher hasher = new ModelHasher();
+        hasher.update(relativePathToContextRoot);
+        hasher.update(hasLogs ? 1 : 0);
+        if (resource.getType() == ModelType.OBJECT) {
+            for (String key : resource.keys()) {
+                hasher.update(key);
+                final ModelNode value = resource.get(key);
+                if ("children".equals(key)) {
+                    hashChildren(hasher, value);
+                } else if ("attributes".equals(key)) {
+                    hasher.update(value);
+                    hasher.updateCapabilityReferences(value, globalCapabilities);
+                } else {
+                    hasher.update(value);
+                }
+            }
+        } else {
+            hasher.update(resource);
+        }
+        hasher.update(capabilities.size());
+        for (Capability capability : capabilities) {
+            hasher.update(capability.getName());
+            hasher.update(capability.isDynamic() ? 1 : 0);
+            hasher.update(capability.getProviderPoints().size());
+            capability.getProviderPoints().forEach(hasher::update);
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Returns the rendered body for the key.
+     *
+     * @param key the key
+     *
+     * @return the body or {@code null} if it has not been rendered
+     */
+    String get(final String key) {
+        final String body = bodies.get(key);
+        if (body == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return body;
+    }
+
+    /**
+     * Adds a rendered body.
+     *
+     * @param key  the key
+     * @param body the rendered body
+     */
+    void put(final String key, final String body) {
+        bodies.put(key, body);
+    }
+
+    /**
+     * Logs how many bodies were reused.
+     */
+    void logStatistics() {
+        final long hit = hits.sum();
+        final long total = hit + misses.sum();
+        LOGGER.infof("Reused %d of %d resource page bodies (%.1f%%)", hit, total, total == 0 ? 0.0 : hit * 100.0 / total);
+    }
+
+    private static void hashChildren(final ModelHasher hasher, final ModelNode children) {
+        if (!children.isDefined()) {
+            hasher.update(children);
+            return;
+        }
+        for (Property child : children.asPropertyList()) {
+            hasher.update(child.getName());
+            final ModelNode childType = child.getValue();
+            if (childType.getType() != ModelType.OBJECT) {
+                hasher.update(childType);
+                continue;
+            }
+            for (String key : childType.keys()) {
+                hasher.update(key);
+                final ModelNode value = childType.get(key);
+                if ("model-description".equals(key) && value.isDefined()) {
+                    // Only the registrations themselves are shown, their content is part of their own page
+                    for (Property registration : value.asPropertyList()) {
+                        hasher.update(registration.getName());
+                        hasher.update(ModelNodes.read(registration.getValue(), "description"));
+                        hasher.update(ModelNodes.read(registration.getValue(), "deprecated"));
+                    }
+                } else {
+                    hasher.update(value);
+                }
+            }
+        }
+    }
+}
@@ -10,18 +10,28 @@ import java.util.Map;
 
 /**
  * Representation of a management resource, in a nice format for templates
+ * <p>
+ * A description created by {@link #fromModelNode(PathAddress, ModelNode, Map)} only builds its children, attributes,
+ * operations and capabilities the first time they are asked for. A page whose sections are reused from other pages never
+ * builds them at all. Such a description is not thread safe, it is only meant to be used by the thread rendering its
+ * page.
+ * </p>
  *
  * @author Stuart Douglas
  */
 public class ResourceDescription {
 
     private final String description;
-    private final List<Child> children;
-    private final List<Attribute> attributes;
-    private final List<Operation> operations;
+    private List<Child> children;
+    private List<Attribute> attributes;
+    private List<Operation> operations;
     private final Deprecated deprecated;
-    private final List<Capability> capabilities;
+    private List<Capability> capabilities;
     private final String storage;
+    // The resource the lists are built from on first use, null once they are all built
+    private ModelNode node;
+    private final PathAddress address;
+    private final CapabilityIndex globalCapabilities;
 
     public ResourceDescription(String description, List<Child> children, List<Attribute> attributes, List<Operation> operations, Deprecated deprecated, List<Capability> capabilities, String storage) {
         this.description = description;
@@ -31,6 +41,17 @@ public class ResourceDescription {
         this.deprecated = deprecated;
         this.capabilities = capabilities;
         this.storage = storage;
+        this.address = null;
+        this.globalCapabilities = null;
+    }
+
+    private ResourceDescription(PathAddress address, ModelNode node, CapabilityIndex globalCapabilities) {
+        this.description = ModelNodes.read(node, "description").asString();
+        this.deprecated = Deprecated.fromModel(node);
+        this.storage = ModelNodes.read(node, "storage").asString("configuration");
+        this.node = node;
+        this.address = address;
+        this.globalCapabilities = globalCapabilities;
     }
 
 
@@ -39,14 +60,46 @@ public class ResourceDescription {
     }
 
     public List<Child> getChildren() {
+        if (children == null) {
+            children = new ArrayList<Child>();
+            if (node.hasDefined("children")) {
+                // The child types hold the whole subtree of their registrations, only their summary is read
+                final ModelNode types = node.get("children");
+                for (String type : types.keys()) {
+                    children.add(Child.fromModel(type, types.get(type)));
+                }
+                Collections.sort(children);
+            }
+            release();
+        }
         return children;
     }
 
     public List<Attribute> getAttributes() {
+        if (attributes == null) {
+            attributes = new ArrayList<Attribute>();
+            if (node.hasDefined("attributes")) {
+                for (Property i : node.get("attributes").asPropertyList()) {
+                    attributes.add(Attribute.fromProperty(i));
+                }
+                Collections.sort(attributes);
+            }
+            release();
+        }
         return attributes;
     }
 
     public List<Operation> getOperations() {
+        if (operations == null) {
+            operations = new ArrayList<Operation>();
+            if (node.hasDefined("operations")) {
+                for (Property i : node.get("operations").asPropertyList()) {
+                    operations.add(Operation.fromProperty(i));
+                }
+            }
+            Collections.sort(operations);
+            release();
+        }
         return operations;
     }
 
@@ -55,6 +108,10 @@ public class ResourceDescription {
     }
 
     public List<Capability> getCapabilities() {
+        if (capabilities == null) {
+            capabilities = globalCapabilities.resolve(ModelNodes.read(node, "capabilities"), address);
+            release();
+        }
         return capabilities;
     }
 
@@ -66,36 +123,21 @@ public class ResourceDescription {
         return "runtime-only".equals(storage);
     }
 
-    public static ResourceDescription fromModelNode(PathAddress pathElements, final ModelNode node, Map<String, Capability> capabilities) {
-        final List<Operation> ops = new ArrayList<Operation>();
-        if(node.hasDefined("operations")) {
-            for (Property i : node.get("operations").asPropertyList()) {
-                ops.add(Operation.fromProperty(i));
-            }
-        }
-        Collections.sort(ops);
-
-
-        final List<Child> children = new ArrayList<Child>();
-        if (node.hasDefined("children")) {
-            for (Property i : node.get("children").asPropertyList()) {
-                children.add(Child.fromProperty(i));
-            }
-            Collections.sort(children);
+    /**
+     * Drops the resource once every list has been built from it.
+     */
+    private void release() {
+        if (children != null && attributes != null && operations != null && capabilities != null) {
+            node = null;
         }
+    }
 
+    public static ResourceDescription fromModelNode(PathAddress pathElements, final ModelNode node, Map<String, Capability> capabilities) {
+        return new ResourceDescription(pathElements, node, new CapabilityIndex(capabilities));
+    }
 
-        final List<Attribute> attributes = new ArrayList<Attribute>();
-        if (node.hasDefined("attributes")) {
-            for (Property i : node.get("attributes").asPropertyList()) {
-                attributes.add(Attribute.fromProperty(i));
-            }
-            Collections.sort(attributes);
-        }
-        String storage = node.get("storage").asString("configuration");
-
-        return new ResourceDescription(node.get("description").asString(), children, attributes, ops, Deprecated.fromModel(node), Capability.fromModelList(node.get("capabilities"), capabilities, pathElements), storage);
-
+    static ResourceDescription fromModelNode(PathAddress pathElements, final ModelNode node, CapabilityIndex capabilities) {
+        return new ResourceDescription(pathElements, node, capabilities);
     }
 
 }
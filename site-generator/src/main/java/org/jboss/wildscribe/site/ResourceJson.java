@@ -0,0 +1,185 @@
+package org.jboss.wildscribe.site;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes the view model of a resource as the compact JSON rendered by the single page app.
+ * <p>
+ * Only what the resource page shows is written. Values which are {@code false}, empty or not defined are left out and
+ * the links which can be derived from a name, like the description of a capability, are built by the app.
+ * </p>
+ */
+final class ResourceJson {
+
+    private ResourceJson() {
+    }
+
+    /**
+     * Writes a resource.
+     *
+     * @param json     the writer
+     * @param path     the address of the resource
+     * @param resource the resource description
+     *
+     * @throws IOException if the resource could not be written
+     */
+    static void write(final JsonWriter json, final PathElement[] path, final ResourceDescription resource) throws IOException {
+        json.beginObject();
+        json.name("path").beginArray();
+        for (PathElement element : path) {
+            json.value(element.isWildcard() ? element.getKey() : element.getKey() + '=' + element.getValue());
+        }
+        json.endArray();
+        json.optional("description", resource.getDescription());
+        writeDeprecated(json, resource.getDeprecated());
+        json.optional("runtime", resource.isRuntime());
+        if (!resource.getChildren().isEmpty()) {
+            json.name("children").beginArray();
+            for (Child child : resource.getChildren()) {
+                writeChild(json, child);
+            }
+            json.endArray();
+        }
+        if (!resource.getCapabilities().isEmpty()) {
+            json.name("capabilities").beginArray();
+            for (Capability capability : resource.getCapabilities()) {
+                json.beginObject();
+                json.name("name").value(capability.getName());
+                json.optional("dynamic", capability.isDynamic());
+                writeProviderPoints(json, capability);
+                json.endObject();
+            }
+            json.endArray();
+        }
+        if (!resource.getAttributes().isEmpty()) {
+            json.name("attributes").beginArray();
+            for (Attribute attribute : resource.getAttributes()) {
+                writeAttribute(json, attribute);
+            }
+            json.endArray();
+        }
+        if (!resource.getOperations().isEmpty()) {
+            json.name("operations").beginArray();
+            for (Operation operation : resource.getOperations()) {
+                writeOperation(json, operation);
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    /**
+     * Writes the provider points of a capability, in the order of the model, as an object mapping each provider point
+     * to the URL of its resource relative to the root of the version.
+     *
+     * @param json       the writer
+     * @param capability the capability
+     *
+     * @throws IOException if the provider points could not be written
+     */
+    static void writeProviderPoints(final JsonWriter json, final Capability capability) throws IOException {
+        if (capability.getProviderPoints().isEmpty()) {
+            return;
+        }
+        final Map<String, String> urls = capability.getProviderPointsUrls();
+        json.name("providers").beginObject();
+        for (String providerPoint : capability.getProviderPoints()) {
+            json.name(providerPoint).value(urls.get(providerPoint));
+        }
+        json.endObject();
+    }
+
+    private static void writeChild(final JsonWriter json, final Child child) throws IOException {
+        json.beginObject();
+        json.name("name").value(child.getName());
+        json.optional("description", child.getDescription());
+        writeDeprecated(json, child.getDeprecated());
+        if (child.getChildren() != null && !child.getChildren().isEmpty()) {
+            json.name("registrations").beginArray();
+            for (Child registration : child.getChildren()) {
+                writeChild(json, registration);
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    private static void writeAttribute(final JsonWriter json, final Attribute attribute) throws IOException {
+        json.beginObject();
+        json.name("name").value(attribute.getName());
+        json.optional("description", attribute.getDescription());
+        writeDeprecated(json, attribute.getDeprecated());
+        json.optional("type", attribute.getType());
+        json.optional("nillable", attribute.isNillable());
+        json.optional("expressionsAllowed", attribute.isExpressionsAllowed());
+        if (attribute.getDefaultValue() != null) {
+            json.name("defaultValue").value(attribute.getDefaultValue());
+        }
+        json.optional("capabilityReference", attribute.getCapabilityReference());
+        if (attribute.getMin() != null) {
+            json.name("min").value(attribute.getMin());
+        }
+        if (attribute.getMax() != null) {
+            json.name("max").value(attribute.getMax());
+        }
+        json.optional("unit", attribute.getUnit());
+        json.optional("storage", attribute.getStorage());
+        json.optional("accessType", attribute.getAccessType());
+        json.optional("restartRequired", attribute.getRestartRequired());
+        if (!attribute.getAllowedValues().isEmpty()) {
+            json.name("allowedValues").beginArray();
+            for (String value : attribute.getAllowedValues()) {
+                json.value(value);
+            }
+            json.endArray();
+        }
+        json.optional("stability", attribute.getStability());
+        json.endObject();
+    }
+
+    private static void writeOperation(final JsonWriter json, final Operation operation) throws IOException {
+        json.beginObject();
+        json.name("name").value(operation.getName());
+        json.optional("description", operation.getDescription());
+        writeDeprecated(json, operation.getDeprecated());
+        json.optional("stability", operation.getStability());
+        if (!operation.getParameters().isEmpty()) {
+            json.name("parameters").beginArray();
+            for (Operation.Parameter parameter : operation.getParameters()) {
+                json.beginObject();
+                json.name("name").value(parameter.getName());
+                json.optional("type", parameter.getType());
+                json.optional("required", parameter.isRequired());
+                json.optional("expressionsAllowed", parameter.isExpressionsAllowed());
+                if (parameter.getDefaultValue() != null) {
+                    json.name("defaultValue").value(parameter.getDefaultValue());
+                }
+                json.optional("description", parameter.getDescription());
+                json.endObject();
+            }
+            json.endArray();
+        }
+        final Operation.Reply reply = operation.getReply();
+        if (reply != null) {
+            json.name("reply").beginObject();
+            json.optional("type", reply.getType());
+            if (reply.getValueType() != null) {
+                json.name("valueType").value(reply.getValueType());
+            }
+            json.optional("description", reply.getDescription());
+            json.endObject();
+        }
+        json.endObject();
+    }
+
+    private static void writeDeprecated(final JsonWriter json, final Deprecated deprecated) throws IOException {
+        if (deprecated == null || !deprecated.isDeprecated()) {
+            return;
+        }
+        json.name("deprecated").beginObject();
+        json.optional("since", deprecated.getSince());
+        json.optional("reason", deprecated.getReason());
+        json.endObject();
+    }
+}
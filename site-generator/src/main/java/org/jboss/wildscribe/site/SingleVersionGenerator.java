@@ -3,22 +3,29 @@ package org.jboss.wildscribe.site;
 import static org.jboss.wildscribe.site.SiteGenerator.INDEX_HTML;
 
 import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.Property;
 
-import java.io.DataInputStream;
-import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.googlecode.htmlcompressor.compressor.HtmlCompressor;
 import freemarker.template.Configuration;
@@ -30,22 +37,41 @@ import freemarker.template.TemplateException;
  */
 class SingleVersionGenerator {
     public static final String RESOURCE_HTML = "resource.html";
-    private static final String LOG_MESSAGE_REFERENCE_HTML = "log-message-reference.html";
+    static final String LOG_MESSAGE_REFERENCE_HTML = "log-message-reference.html";
     private static final String LOGS_HTML = "logs.html";
+    private static final String RESOURCE_BODY_HTML = "resource-body.html";
+    private static final String SPA_HTML = "spa.html";
+    private static final String SPA_DATA = "data";
+    private static final String SPA_INDEX_JSON = "index.json";
+    /**
+     * The compressor keeps its settings in fields, each thread uses its own.
+     */
+    private static final ThreadLocal<HtmlCompressor> COMPRESSOR = ThreadLocal.withInitial(HtmlCompressor::new);
+    private static final String PAGE_CONTENT_MARKER = "\u0000wildscribe-page-content\u0000";
     public final String layoutHtml;
-    private final Map<String, Capability> capabilities = new LinkedHashMap<>();
+    private CapabilityIndex capabilityIndex = CapabilityIndex.EMPTY;
+    private Map<String, Capability> capabilities = Collections.emptyMap();
     private final List<Version> versions;
     private final Version version;
     private final Configuration configuration;
+    private final SiteOutput output;
     private final Path outputDir;
     private boolean single = false;
+    private boolean sharedVersionMenu = false;
+    private ResourceBodyCache resourceBodies;
+    private CompactNode.Pool strings;
+    private FragmentCache fragments;
+    private Map<String, String[]> chrome;
+    private boolean minifyPages = true;
+    private ResourceAddress rootAddress;
 
 
-    SingleVersionGenerator(List<Version> versions, Version version, Configuration configuration, Path outputDir, String layoutHtml) {
+    SingleVersionGenerator(List<Version> versions, Version version, Configuration configuration, SiteOutput output, String layoutHtml) {
         this.versions = versions;
         this.version = version;
         this.configuration = configuration;
-        this.outputDir = outputDir;
+        this.output = output;
+        this.outputDir = output == null ? null : output.getRoot();
         this.layoutHtml = layoutHtml;
     }
 
@@ -53,135 +79,593 @@ class SingleVersionGenerator {
         this.single = single;
     }
 
+    public void setSharedVersionMenu(boolean sharedVersionMenu) {
+        this.sharedVersionMenu = sharedVersionMenu;
+    }
+
+    /**
+     * Sets the cache used to reuse the rendered body of resource pages which are identical in other versions.
+     *
+     * @param resourceBodies the cache or {@code null} to render every page in full
+     */
+    void setResourceBodyCache(ResourceBodyCache resourceBodies) {
+        this.resourceBodies = resourceBodies;
+    }
+
+    /**
+     * Sets the pool the strings of the compact model are shared through, so they are shared with other versions.
+     *
+     * @param strings the pool or {@code null} to use a pool of this version only
+     */
+    void setStringPool(CompactNode.Pool strings) {
+        this.strings = strings;
+    }
+
     public void generate() throws IOException, TemplateException {
+        generate(isStreamed() ? null : load(version, strings));
+    }
+
+    /**
+     * Generates the version from a model which has already been loaded.
+     *
+     * @param loaded the model returned by {@link #load(Version, CompactNode.Pool)} or {@code null} if the version
+     *               {@link #isStreamed() is streamed}
+     */
+    void generate(LoadedModel loaded) throws IOException, TemplateException {
         List<LogMessage> messages = loadLogMessages();
-        final ModelNode model = new ModelNode();
-        model.readExternal(new FileInputStream(version.getDmrFile()));
-        capabilities.putAll(getCapabilityMap(model));
-        Template template = configuration.getTemplate(layoutHtml);
-        createResourcePage(model, template, messages != null);
+        final boolean spa = GeneratorProperties.isEnabled(GeneratorProperties.SPA);
+        final boolean stream = loaded == null;
+        final Path dmrFile = version.getDmrFile().toPath();
+        Template template;
+        try (CompiledModel compiled = stream && CompiledModel.isCompiled(dmrFile) ? CompiledModel.open(dmrFile) : null) {
+            // The capabilities are shared by every page rendered for this version and must not change once rendering starts
+            if (stream && compiled != null) {
+                capabilityIndex = CapabilityIndex.fromModel(ModelNodes.read(compiled.readResource(PathAddress.EMPTY_ADDRESS), "possible-capabilities"));
+            } else if (stream) {
+                // The capabilities follow the resources in the model, so they are read first while skipping everything else
+                final DmrStreamReader reader = DmrStreamReader.open(dmrFile);
+                capabilityIndex = CapabilityIndex.fromModel(reader.readRootEntry("possible-capabilities"));
+            } else {
+                capabilityIndex = loaded.capabilities;
+            }
+            prepare(capabilityIndex);
+            template = configuration.getTemplate(layoutHtml);
+            if (stream) {
+                createStreamedResourcePages(compiled, template, messages != null);
+            } else if (spa) {
+                createSinglePageApp(new ResourcePage(loaded.model, loaded.compact, rootAddress, messages != null), template);
+            } else {
+                createResourcePage(new ResourcePage(loaded.model, loaded.compact, rootAddress, messages != null), template);
+            }
+        }
+        if (fragments != null) {
+            fragments.logStatistics(version.getProduct() + " " + version.getVersion());
+            fragments = null;
+        }
         if (messages != null) {
             createLogMessagePage(template, messages);
         }
     }
 
+    /**
+     * Prepares the generator to render the pages of the version.
+     *
+     * @param capabilityIndex the capabilities of the version
+     */
+    void prepare(CapabilityIndex capabilityIndex) {
+        this.capabilityIndex = capabilityIndex;
+        capabilities = capabilityIndex.asMap();
+        if (GeneratorProperties.isEnabled(GeneratorProperties.FRAGMENTS)) {
+            fragments = new FragmentCache();
+        }
+        if (GeneratorProperties.isEnabled(GeneratorProperties.CHROME)) {
+            chrome = new ConcurrentHashMap<>();
+        }
+        minifyPages = MinifyMode.get().isPages();
+        rootAddress = ResourceAddress.root(single ? "home" : version.getProduct() + " " + version.getVersion());
+    }
+
+    /**
+     * Renders the page of a single resource without writing it. The generator must have been
+     * {@linkplain #prepare(CapabilityIndex) prepared}.
+     *
+     * @param path     the address of the resource
+     * @param resource the resource, as in the model of the version
+     *
+     * @return the page
+     */
+    String renderResourcePage(PathElement[] path, ModelNode resource) throws TemplateException, IOException {
+        // As when generating the version, only the root page links to the log messages
+        final ResourcePage page = new ResourcePage(resource, null, rootAddress.resolve(path), path.length == 0 && version.getMessagesFile() != null);
+        return minify(renderPage(configuration.getTemplate(layoutHtml), describePage(page))).html;
+    }
+
+    /**
+     * Renders the log message reference of the version without writing it. The generator must have been
+     * {@linkplain #prepare(CapabilityIndex) prepared}.
+     *
+     * @return the page or {@code null} if the version has no log messages
+     */
+    String renderLogMessagePage() throws TemplateException, IOException {
+        final List<LogMessage> messages = loadLogMessages();
+        if (messages == null) {
+            return null;
+        }
+        final StringWriter writer = new StringWriter();
+        configuration.getTemplate(layoutHtml).process(describeLogMessagePage(messages), writer);
+        return minifyPages ? COMPRESSOR.get().compress(writer.toString()) : writer.toString();
+    }
+
+    /**
+     * Checks whether the versions are read one resource at a time while their pages are created, instead of being
+     * loaded first.
+     */
+    static boolean isStreamed() {
+        return !GeneratorProperties.isEnabled(GeneratorProperties.SPA) && GeneratorProperties.isEnabled(GeneratorProperties.STREAM);
+    }
+
+    /**
+     * Loads the model of a version. The model can be loaded on another thread, ahead of generating the version.
+     *
+     * @param version the version
+     * @param strings the pool the strings of a compact model are shared through, or {@code null} to use a pool of this
+     *                version only
+     *
+     * @return the model
+     *
+     * @throws IOException if the model cannot be read
+     */
+    static LoadedModel load(Version version, CompactNode.Pool strings) throws IOException {
+        final Path dmrFile = version.getDmrFile().toPath();
+        // A compiled model is read as a whole, so it does not need to stay open
+        final ModelNode compiledModel;
+        if (CompiledModel.isCompiled(dmrFile)) {
+            try (CompiledModel compiled = CompiledModel.open(dmrFile)) {
+                compiledModel = compiled.readModel();
+            }
+        } else {
+            compiledModel = null;
+        }
+        if (GeneratorProperties.isEnabled(GeneratorProperties.COMPACT)) {
+            final CompactNode.Pool pool = strings == null ? new CompactNode.Pool() : strings;
+            final CompactNode compactModel;
+            if (compiledModel != null) {
+                compactModel = CompactNode.of(compiledModel, pool);
+            } else {
+                compactModel = CompactNode.read(MappedInput.map(dmrFile), pool);
+            }
+            return new LoadedModel(null, compactModel, CapabilityIndex.fromModel(compactModel.get("possible-capabilities").toModelNode()));
+        }
+        final ModelNode model;
+        if (compiledModel != null) {
+            model = compiledModel;
+        } else {
+            model = new ModelNode();
+            model.readExternal(MappedInput.map(dmrFile));
+        }
+        return new LoadedModel(model, null, CapabilityIndex.fromModel(model.get("possible-capabilities")));
+    }
+
     private List<LogMessage> loadLogMessages() throws IOException {
         File file = version.getMessagesFile();
         if (file == null) {
             return null;
         }
         List<LogMessage> ret = new ArrayList<>();
-        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
-            for (; ; ) {
-                String code = in.readUTF();
-                String level = in.readUTF();
-                String returnType = in.readUTF();
-                String message = in.readUTF();
-                int id = in.readInt();
-                int length = in.readInt();
-                ret.add(new LogMessage(level, code, message, length, id, returnType));
+        // The strings are only decoded once the log message page needs them
+        final MappedInput in = MappedInput.map(file.toPath());
+        while (in.hasRemaining()) {
+            MappedInput.LazyString code = in.readLazyUTF();
+            MappedInput.LazyString level = in.readLazyUTF();
+            MappedInput.LazyString returnType = in.readLazyUTF();
+            MappedInput.LazyString message = in.readLazyUTF();
+            int id = in.readInt();
+            int length = in.readInt();
+            ret.add(new LogMessage(level, code, message, length, id, returnType));
+        }
+        return ret;
+    }
+
+
+    private void createResourcePage(ResourcePage root, Template template) throws TemplateException, IOException {
+        if (GeneratorProperties.isEnabled(GeneratorProperties.PIPELINE)) {
+            createPipeline(template).run(root);
+            return;
+        }
+        final int parallelism = GeneratorProperties.getThreads(GeneratorProperties.RENDER_PARALLELISM, 1);
+        if (parallelism <= 1) {
+            createResourcePages(root, template);
+            return;
+        }
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ResourcePageTask(root, template));
+        } catch (UncheckedPageException e) {
+            final Exception cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
             }
-        } catch (EOFException e) {
+            throw (TemplateException) cause;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 
+    /**
+     * Creates the resource pages while the model is read. Each page is created as soon as its resource has been read,
+     * so the model is never held in memory as a whole.
+     *
+     * @param compiled the compiled model the resources are read from, or {@code null} to read the DMR file
+     */
+    private void createStreamedResourcePages(CompiledModel compiled, Template template, boolean hasLogs) throws TemplateException, IOException {
+        final int parallelism = GeneratorProperties.getThreads(GeneratorProperties.RENDER_PARALLELISM, 1);
+        // The queue is bounded so the reader cannot get far ahead of the rendering, once it is full the reader
+        // creates the page itself
+        final ThreadPoolExecutor executor = parallelism <= 1 ? null : new ThreadPoolExecutor(parallelism, parallelism,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(parallelism * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        // The resources are read depth first, so each address mostly shares its ancestors with the previous one
+        final ResourceAddress[] previous = {rootAddress};
+        try {
+            final DmrStreamReader.ResourceConsumer consumer = (path, resource) -> {
+                if (failure.get() != null) {
+                    throw new UncheckedPageException(failure.get());
+                }
+                previous[0] = previous[0].resolve(path);
+                final ResourcePage page = new ResourcePage(resource, null, previous[0], hasLogs && path.length == 0);
+                final Runnable task = () -> {
+                    try {
+                        createPage(page, template);
+                    } catch (IOException | TemplateException | RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                };
+                if (executor == null) {
+                    task.run();
+                } else {
+                    executor.execute(task);
+                }
+            };
+            if (compiled != null) {
+                compiled.read(consumer);
+            } else {
+                DmrStreamReader.open(version.getDmrFile().toPath()).read(consumer);
+            }
+        } catch (UncheckedPageException e) {
+            // A page failed, which is reported below once the pages being created are done
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while creating the pages of " + version.getProduct() + " " + version.getVersion());
+                }
+            }
         }
-        return ret;
+        final Exception cause = failure.get();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof TemplateException) {
+            throw (TemplateException) cause;
+        } else if (cause != null) {
+            throw (RuntimeException) cause;
+        }
+    }
+
+    /**
+     * Writes the resources of the version as JSON shards, one for the root resource and one for each subtree of its
+     * child registrations, along with the single page which renders them.
+     */
+    private void createSinglePageApp(ResourcePage root, Template template) throws TemplateException, IOException {
+        final Path dataDir = getVersionDir().resolve(SPA_DATA);
+        final boolean hasLogs = root.hasLogs;
+        final Map<String, String> shards = new LinkedHashMap<>();
+        for (ResourcePage page : getChildPages(root)) {
+            final PathElement element = page.address.getElement(0);
+            final String file = (element.isWildcard() ? element.getKey() : element.getKey() + '=' + element.getValue()) + ".json";
+            shards.put(page.address.getUrl(), file);
+            try (Writer writer = output.newWriter(dataDir.resolve(file))) {
+                final JsonWriter json = new JsonWriter(writer).beginObject();
+                writeResources(json, page);
+                json.endObject();
+            }
+        }
+        try (Writer writer = output.newWriter(dataDir.resolve(SPA_INDEX_JSON))) {
+            final JsonWriter json = new JsonWriter(writer).beginObject();
+            json.optional("messages", hasLogs);
+            json.name("shards").beginObject();
+            for (Map.Entry<String, String> shard : shards.entrySet()) {
+                json.name(shard.getKey()).value(shard.getValue());
+            }
+            json.endObject();
+            json.name("capabilities").beginObject();
+            for (Capability capability : capabilities.values()) {
+                json.name(capability.getName()).beginObject();
+                ResourceJson.writeProviderPoints(json, capability);
+                json.endObject();
+            }
+            json.endObject();
+            json.name("resource");
+            ResourceJson.write(json, root.address.getPath(), ResourceDescription.fromModelNode(root.address, root.getModel(), capabilityIndex));
+            json.endObject();
+        }
+
+        final Map<String, Object> data = new HashMap<>();
+        data.put("page", SPA_HTML);
+        data.put("versions", versions);
+        data.put("version", version);
+        data.put("relativePathToContextRoot", "");
+        data.put("productHomeUrl", single ? "" : version.getProduct() + '/' + version.getVersion());
+        data.put("sharedVersionMenu", sharedVersionMenu);
+        // The static resources are in the root of the site, which is only the root of the version for a single version
+        data.put("staticRoot", single ? "" : "/");
+        data.put("dataUrl", SPA_DATA + '/');
+        processPage(template, data, getVersionDir().resolve(INDEX_HTML));
     }
 
+    private void writeResources(JsonWriter json, ResourcePage page) throws IOException {
+        json.name(page.address.getUrl());
+        ResourceJson.write(json, page.address.getPath(), ResourceDescription.fromModelNode(page.address, page.getModel(), capabilityIndex));
+        for (ResourcePage child : getChildPages(page)) {
+            writeResources(json, child);
+        }
+    }
 
-    private Map<String, Capability> getCapabilityMap(ModelNode fullModel) {
-        ModelNode capabilitiesModel = fullModel.get("possible-capabilities");
-        Map<String, Capability> capabilityMap = new TreeMap<>();
-        if (capabilitiesModel.isDefined()) {
-            capabilitiesModel.asList().forEach(cap -> {
-                Capability capability = Capability.fromModel(cap, Collections.emptyMap(), null);
-                capabilityMap.put(capability.getName(), capability);
-            });
+    private void createResourcePages(ResourcePage page, Template template) throws TemplateException, IOException {
+        createPage(page, template);
+        for (ResourcePage child : getChildPages(page)) {
+            createResourcePages(child, template);
         }
-        return capabilityMap;
     }
 
+    private GenerationPipeline<ResourcePage> createPipeline(Template template) {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        return GenerationPipeline.<ResourcePage>builder(version.getProduct() + " " + version.getVersion())
+                .traverse(GeneratorProperties.getThreads(GeneratorProperties.PIPELINE_TRAVERSE_THREADS, 1), this::getChildPages)
+                .stage("describe", GeneratorProperties.getThreads(GeneratorProperties.PIPELINE_DESCRIBE_THREADS, 1), this::describePage)
+                .stage("render", GeneratorProperties.getThreads(GeneratorProperties.PIPELINE_RENDER_THREADS, processors), data -> renderPage(template, data))
+                .stage("minify", GeneratorProperties.getThreads(GeneratorProperties.PIPELINE_MINIFY_THREADS, processors), this::minify)
+                .sink("write", GeneratorProperties.getThreads(GeneratorProperties.PIPELINE_WRITE_THREADS, 2), this::writePage)
+                .build(GeneratorProperties.getInt(GeneratorProperties.PIPELINE_QUEUE_CAPACITY, 64));
+    }
+
+    /**
+     * Resolves the child registrations of a resource which need their own page. This only reads the model so it can
+     * run while other threads describe and render the pages already found.
+     */
+    private List<ResourcePage> getChildPages(ResourcePage page) {
+        if (page.compact != null) {
+            return getCompactChildPages(page);
+        }
+        final ModelNode model = page.model;
+        final List<ResourcePage> childPages = new ArrayList<>();
+        if (!model.hasDefined("children")) {
+            return childPages;
+        }
+        for (Property child : model.get("children").asPropertyList()) {
+            final ModelNode modelDescription = ModelNodes.read(child.getValue(), "model-description");
+            final List<String> registrations = new ArrayList<>();
+            if (modelDescription.isDefined()) {
+                for (String name : modelDescription.keys()) {
+                    if (!name.equals("*")) {
+                        registrations.add(name);
+                    }
+                }
+            }
+            if (registrations.isEmpty()) {
+                if (modelDescription.isDefined()) {
+                    childPages.add(new ResourcePage(ModelNodes.read(modelDescription, "*"), null, page.address.child(child.getName(), "*"), false));
+                }
+            } else {
+                Collections.sort(registrations);
+                for (String registration : registrations) {
+                    if (modelDescription.hasDefined(registration)) {
+                        childPages.add(new ResourcePage(modelDescription.get(registration), null, page.address.child(child.getName(), registration), false));
+                    }
+                }
+            }
+        }
+        return childPages;
+    }
 
-    private void createResourcePage(ModelNode model, Template template, boolean hasLogs, PathElement... path) throws TemplateException, IOException {
-        final String currentUrl = buildCurrentUrl(path);
-        final String relativePathToContextRoot = createRelativePathToContextRoor(currentUrl);
+    /**
+     * Resolves the child registrations of a resource of a compact model, the same as {@link #getChildPages(ResourcePage)}.
+     */
+    private List<ResourcePage> getCompactChildPages(ResourcePage page) {
+        final CompactNode children = page.compact.get("children");
+        final List<ResourcePage> childPages = new ArrayList<>();
+        for (String type : children.keys()) {
+            final CompactNode modelDescription = children.get(type).get("model-description");
+            final List<String> registrations = new ArrayList<>();
+            for (String name : modelDescription.keys()) {
+                if (!name.equals("*")) {
+                    registrations.add(name);
+                }
+            }
+            if (registrations.isEmpty()) {
+                if (modelDescription.isDefined()) {
+                    childPages.add(new ResourcePage(null, modelDescription.get("*"), page.address.child(type, "*"), false));
+                }
+            } else {
+                Collections.sort(registrations);
+                for (String registration : registrations) {
+                    if (modelDescription.hasDefined(registration)) {
+                        childPages.add(new ResourcePage(null, modelDescription.get(registration), page.address.child(type, registration), false));
+                    }
+                }
+            }
+        }
+        return childPages;
+    }
+
+    /**
+     * Builds the view model for a resource page along with the file the page is written to.
+     */
+    private PageData describePage(ResourcePage page) {
+        final ModelNode model = page.getModel();
+        final ResourceAddress address = page.address;
+        final String currentUrl = address.getUrl();
+        final String relativePathToContextRoot = address.getRelativePathToContextRoot();
         final String currentUrlWithSeparator = currentUrl + (currentUrl.isEmpty() ? "" : "/");
         final String productHomeUrl = single ? "" : version.getProduct() + '/' + version.getVersion();
-        final ResourceDescription resourceDescription = ResourceDescription.fromModelNode(PathAddress.pathAddress(path), model, capabilities);
-        final List<Breadcrumb> crumbs = buildBreadcrumbs(path);
+        final List<Breadcrumb> crumbs = address.getBreadcrumbs();
         final Map<String, Object> data = new HashMap<>();
-        data.put("page", RESOURCE_HTML);
-        data.put("versions", versions);
-        data.put("version", version);
-        data.put("currenturl", currentUrl);
-        data.put("currentUrlWithSeparator", currentUrlWithSeparator);
+        if (chrome == null) {
+            data.put("page", RESOURCE_HTML);
+            data.put("versions", versions);
+            data.put("version", version);
+            data.put("currenturl", currentUrl);
+            data.put("currentUrlWithSeparator", currentUrlWithSeparator);
+            data.put("productHomeUrl", productHomeUrl);
+            data.put("sharedVersionMenu", sharedVersionMenu);
+        }
         data.put("relativePathToContextRoot", relativePathToContextRoot);
-        data.put("has_messages", hasLogs);
+        data.put("has_messages", page.hasLogs);
         data.put("globalCapabilities", capabilities);
-        data.put("productHomeUrl", productHomeUrl);
-        data.put("model", resourceDescription);
         data.put("breadcrumbs", crumbs);
+        String bodyKey = null;
+        if (resourceBodies != null) {
+            bodyKey = ResourceBodyCache.key(model, capabilityIndex.resolve(ModelNodes.read(model, "capabilities"), address),
+                    capabilities, relativePathToContextRoot, page.hasLogs);
+            final String body = resourceBodies.get(bodyKey);
+            if (body != null) {
+                data.put("resourceBody", body);
+                bodyKey = null;
+            }
+        }
+        final Map<FragmentCache.Fragment, String> fragmentKeys = new EnumMap<>(FragmentCache.Fragment.class);
+        if (!data.containsKey("resourceBody")) {
+            if (fragments != null) {
+                // The keys must be computed before the resource is converted, which adds missing keys to the model
+                for (FragmentCache.Fragment fragment : FragmentCache.Fragment.values()) {
+                    fragmentKeys.put(fragment, FragmentCache.key(fragment, model, capabilities, relativePathToContextRoot));
+                }
+            }
+            data.put("model", ResourceDescription.fromModelNode(address, model, capabilityIndex));
+        }
 
+        if (outputDir == null) {
+            // The page is only rendered
+            return new PageData(data, null, bodyKey, fragmentKeys);
+        }
         File parent;
         if (single) {
             parent = new File(outputDir.toFile().getAbsolutePath() + File.separator + currentUrl);
         } else {
             parent = new File(outputDir.toFile().getAbsolutePath() + File.separator + version.getProduct() + File.separator + version.getVersion() + (currentUrl.isEmpty() || currentUrl.startsWith(File.separator)? "" : File.separator) + currentUrl);
         }
-        parent.mkdirs();
-        StringWriter stringWriter = new StringWriter();
-        template.process(data, stringWriter);
-        HtmlCompressor compressor = new HtmlCompressor();
-        String compressedHtml = compressor.compress(stringWriter.getBuffer().toString());
-        //String compressedHtml = stringWriter.getBuffer().toString();
-        try (FileOutputStream stream = new FileOutputStream(new File(parent, INDEX_HTML))) {
-            stream.write(compressedHtml.getBytes("UTF-8"));
-        }
-
-        if (resourceDescription.getChildren() != null) {
-            for (Child child : resourceDescription.getChildren()) {
-                if (child.getChildren().isEmpty()) {
-                    PathElement[] newPath = addToPath(path, child.getName(), "*");
-
-                    ModelNode childModel = model.get("children").get(child.getName());
-                    if (childModel.hasDefined("model-description")) {
-                        ModelNode newModel = childModel.get("model-description").get("*");
-                        if (!newModel.hasDefined("operations")) {
-                            newModel.get("operations");
-                        }
-                        createResourcePage(newModel, template, false, newPath);
+        return new PageData(data, new File(parent, INDEX_HTML), bodyKey, fragmentKeys);
+    }
 
-                    }
-                } else {
-                    for (Child registration : child.getChildren()) {
-                        PathElement[] newPath = addToPath(path, child.getName(), registration.getName());
+    private void renderPage(Template template, PageData page, Writer writer) throws TemplateException, IOException {
+        for (Map.Entry<FragmentCache.Fragment, String> entry : page.fragmentKeys.entrySet()) {
+            String html = fragments.get(entry.getKey(), entry.getValue());
+            if (html == null) {
+                final StringWriter fragment = new StringWriter();
+                configuration.getTemplate(entry.getKey().getTemplate()).process(page.data, fragment);
+                html = fragment.toString();
+                fragments.put(entry.getValue(), html);
+            }
+            page.data.put(entry.getKey().getVariable(), html);
+        }
+        if (page.bodyKey != null) {
+            // Render the body on its own so other versions can reuse it, the layout then includes it as is
+            final StringWriter body = new StringWriter();
+            configuration.getTemplate(RESOURCE_BODY_HTML).process(page.data, body);
+            final String html = body.toString();
+            resourceBodies.put(page.bodyKey, html);
+            page.data.put("resourceBody", html);
+        }
+        if (chrome == null) {
+            template.process(page.data, writer);
+        } else {
+            final String[] parts = getChrome(template, RESOURCE_HTML, (String) page.data.get("relativePathToContextRoot"));
+            writer.write(parts[0]);
+            configuration.getTemplate(RESOURCE_HTML).process(page.data, writer);
+            writer.write(parts[1]);
+        }
+    }
 
-                        ModelNode childModel = model.get("children").get(child.getName());
-                        if (childModel.hasDefined("model-description") && childModel.get("model-description").hasDefined(registration.getName())) {
-                            ModelNode newModel = childModel.get("model-description").get(registration.getName());
+    private RenderedPage renderPage(Template template, PageData page) throws TemplateException, IOException {
+        final StringWriter writer = new StringWriter();
+        renderPage(template, page, writer);
+        return new RenderedPage(writer.toString(), page.target);
+    }
 
-                            createResourcePage(newModel, template, false, newPath);
-                        }
-                    }
-                }
-            }
+    /**
+     * Renders a page straight into its file. This is only possible if the rendered pages are not compressed.
+     */
+    private void streamPage(Template template, PageData page) throws TemplateException, IOException {
+        try (Writer writer = output.newWriter(page.target.toPath())) {
+            renderPage(template, page, writer);
         }
+    }
+
+    /**
+     * Describes, renders and writes a resource page.
+     */
+    private void createPage(ResourcePage page, Template template) throws TemplateException, IOException {
+        if (minifyPages) {
+            writePage(minify(renderPage(template, describePage(page))));
+        } else {
+            streamPage(template, describePage(page));
+        }
+    }
 
+    /**
+     * Returns the layout rendered around a page, split where the page is included. The layout only depends on the
+     * version, the kind of page and the depth of the page, so it is rendered once for each of those.
+     */
+    private String[] getChrome(Template template, String pageTemplate, String relativePathToContextRoot) throws TemplateException, IOException {
+        final String key = pageTemplate + ':' + relativePathToContextRoot;
+        String[] parts = chrome.get(key);
+        if (parts == null) {
+            final Map<String, Object> data = new HashMap<>();
+            data.put("page", pageTemplate);
+            data.put("versions", versions);
+            data.put("version", version);
+            data.put("relativePathToContextRoot", relativePathToContextRoot);
+            data.put("productHomeUrl", single ? "" : version.getProduct() + '/' + version.getVersion());
+            data.put("sharedVersionMenu", sharedVersionMenu);
+            data.put("pageContent", PAGE_CONTENT_MARKER);
+            final StringWriter writer = new StringWriter();
+            template.process(data, writer);
+            final String layout = writer.toString();
+            final int index = layout.indexOf(PAGE_CONTENT_MARKER);
+            if (index < 0) {
+                throw new IllegalStateException("The layout " + layoutHtml + " does not include pageContent");
+            }
+            parts = new String[] {layout.substring(0, index), layout.substring(index + PAGE_CONTENT_MARKER.length())};
+            final String[] existing = chrome.putIfAbsent(key, parts);
+            if (existing != null) {
+                parts = existing;
+            }
+        }
+        return parts;
     }
 
-    static String createRelativePathToContextRoor(String relativeUrl) {
-        StringBuilder sb = new StringBuilder();
-        int length = relativeUrl.isEmpty() ? 0 : relativeUrl.split("/").length;
-        for (int i = 0; i < length; i++) {
-            sb.append("../");
+    private RenderedPage minify(RenderedPage page) {
+        if (!minifyPages) {
+            return page;
         }
-        return sb.toString();
+        return new RenderedPage(COMPRESSOR.get().compress(page.html), page.target);
+    }
+
+    private void writePage(RenderedPage page) throws IOException {
+        output.write(page.target.toPath(), page.html);
     }
 
     private void createLogMessagePage(Template template, List<LogMessage> messages) throws TemplateException, IOException {
+        processPage(template, describeLogMessagePage(messages), getVersionDir().resolve(LOG_MESSAGE_REFERENCE_HTML));
+    }
+
+    private Map<String, Object> describeLogMessagePage(List<LogMessage> messages) {
         final String productHomeUrl = single ? "" : version.getProduct() + '/' + version.getVersion();
-        final String currentUrl = buildCurrentUrl();
+        final String currentUrl = rootAddress.getUrl();
         final String currentUrlWithSeparator = currentUrl + (currentUrl.isEmpty() ? "" : "/");
-        final String relativePathToContextRoot = createRelativePathToContextRoor(currentUrl);
+        final String relativePathToContextRoot = rootAddress.getRelativePathToContextRoot();
         final Map<String, Object> data = new HashMap<>();
         data.put("page", LOGS_HTML);
         data.put("versions", versions);
@@ -191,35 +675,47 @@ class SingleVersionGenerator {
         data.put("relativePathToContextRoot", relativePathToContextRoot);
         data.put("globalCapabilities", capabilities);
         data.put("productHomeUrl", productHomeUrl);
-        data.put("breadcrumbs", buildBreadcrumbs(new PathElement[] {PathElement.pathElement("messages")}));
+        data.put("breadcrumbs", rootAddress.child("messages", PathElement.WILDCARD_VALUE).getBreadcrumbs());
+        data.put("sharedVersionMenu", sharedVersionMenu);
 
         Map<String, List<DisplayMessage>> map = new TreeMap<>();
         for (LogMessage msg : messages) {
-            if(msg.getCode().isEmpty()) {
+            if(msg.code.isEmpty()) {
                 continue;
             }
             String realId = msg.getCode() + String.format("%0" + msg.getLength() + "d", msg.getMsgId());
-            DisplayMessage d = new DisplayMessage(realId, msg.getMessage(), msg.getLevel(), msg.getMsgId(), msg.returnType.equals("void") ? "" : msg.returnType);
+            DisplayMessage d = new DisplayMessage(realId, msg.getMessage(), msg.getLevel(), msg.getMsgId(), msg.getReturnType().equals("void") ? "" : msg.getReturnType());
             map.computeIfAbsent(msg.getCode(), (i) -> new ArrayList<>()).add(d);
         }
         map.forEach((s, messages1) -> Collections.sort(messages1));
         data.put("messages", map);
         data.put("codes", new ArrayList<>(map.keySet()));
-        File parent;
-        if (single) {
-            parent = new File(outputDir.toFile().getAbsolutePath() + File.separator);
+        return data;
+    }
+
+    /**
+     * Renders a page which is not a resource page and writes it to the file.
+     */
+    private void processPage(Template template, Map<String, Object> data, Path target) throws TemplateException, IOException {
+        if (minifyPages) {
+            StringWriter stringWriter = new StringWriter();
+            template.process(data, stringWriter);
+            output.write(target, COMPRESSOR.get().compress(stringWriter.toString()));
         } else {
-            parent = new File(outputDir.toFile().getAbsolutePath() + File.separator + version.getProduct() + File.separator + version.getVersion());
+            try (Writer writer = output.newWriter(target)) {
+                template.process(data, writer);
+            }
         }
-        parent.mkdirs();
-        StringWriter stringWriter = new StringWriter();
-        template.process(data, stringWriter);
-        HtmlCompressor compressor = new HtmlCompressor();
-        String compressedHtml = compressor.compress(stringWriter.getBuffer().toString());
-        //String compressedHtml = stringWriter.getBuffer().toString();
-        try (FileOutputStream stream = new FileOutputStream(new File(parent, LOG_MESSAGE_REFERENCE_HTML))) {
-            stream.write(compressedHtml.getBytes("UTF-8"));
+    }
+
+    /**
+     * Returns the directory the pages of the version are written to.
+     */
+    private Path getVersionDir() {
+        if (single) {
+            return outputDir;
         }
+        return outputDir.resolve(version.getProduct()).resolve(version.getVersion());
     }
 
     private String getUrlBase() {
@@ -229,61 +725,128 @@ class SingleVersionGenerator {
         return System.getProperty("url");
     }
 
-    private PathElement[] addToPath(PathElement[] path, final String key, final String value) {
-        PathElement[] newPath = new PathElement[path.length + 1];
-        System.arraycopy(path, 0, newPath, 0, path.length);
-        newPath[path.length] = new PathElement(key, value);
-        return newPath;
+
+    /**
+     * The model of a version along with the index of its capabilities.
+     */
+    static final class LoadedModel {
+        final ModelNode model;
+        /**
+         * The model as a compact tree, {@code null} if it was decoded into {@link #model}.
+         */
+        final CompactNode compact;
+        final CapabilityIndex capabilities;
+
+        private LoadedModel(ModelNode model, CompactNode compact, CapabilityIndex capabilities) {
+            this.model = model;
+            this.compact = compact;
+            this.capabilities = capabilities;
+        }
     }
 
-    private List<Breadcrumb> buildBreadcrumbs(PathElement[] path) {
-        final List<Breadcrumb> crumbs = new ArrayList<>();
-        if (single) {
-            crumbs.add(new Breadcrumb("home", INDEX_HTML));
-        } else {
-            crumbs.add(new Breadcrumb(version.getProduct() + " " + version.getVersion(), INDEX_HTML));
+    private static final class ResourcePage {
+        final ModelNode model;
+        /**
+         * The resource in a compact model, {@code null} if the model was decoded into {@link #model}.
+         */
+        final CompactNode compact;
+        final ResourceAddress address;
+        final boolean hasLogs;
+
+        private ResourcePage(ModelNode model, CompactNode compact, ResourceAddress address, boolean hasLogs) {
+            this.model = model;
+            this.compact = compact;
+            this.address = address;
+            this.hasLogs = hasLogs;
         }
-        StringBuilder currentUrl = new StringBuilder("");
-        for (PathElement i : path) {
-            if (!currentUrl.toString().isEmpty()) {
-                currentUrl.append("/");
-            }
-            currentUrl.append(i.getKey());
-            if (!i.isWildcard()) {
-                currentUrl.append("/").append(i.getValue());
-            }
-            final String label = i.getKey() + (i.isWildcard() ? "" : ("=" + i.getValue()));
-            String url = currentUrl.toString();
-            crumbs.add(new Breadcrumb(label, url + (url.isEmpty() ? "" : "/") + INDEX_HTML));
+
+        /**
+         * Returns the model of the resource. A resource of a compact model is converted on each call, so the caller
+         * should keep the result for as long as it needs it.
+         */
+        ModelNode getModel() {
+            return compact == null ? model : compact.toResourceModel();
+        }
+    }
+
+    private static final class PageData {
+        final Map<String, Object> data;
+        final File target;
+        /**
+         * The key the rendered body is cached with, {@code null} if the body is not cached.
+         */
+        final String bodyKey;
+        /**
+         * The keys of the sections which are rendered on their own and reused by other pages.
+         */
+        final Map<FragmentCache.Fragment, String> fragmentKeys;
+
+        private PageData(Map<String, Object> data, File target, String bodyKey, Map<FragmentCache.Fragment, String> fragmentKeys) {
+            this.data = data;
+            this.target = target;
+            this.bodyKey = bodyKey;
+            this.fragmentKeys = fragmentKeys;
         }
-        return crumbs;
     }
 
-    private String buildCurrentUrl(final PathElement... path) {
-        StringBuilder sb = new StringBuilder();
-        for (PathElement i : path) {
-            if (!sb.toString().isEmpty()) {
-                sb.append('/');
+    private static final class RenderedPage {
+        final String html;
+        final File target;
+
+        private RenderedPage(String html, File target) {
+            this.html = html;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Renders a resource page and then each of its child registration subtrees as separate tasks.
+     */
+    private final class ResourcePageTask extends RecursiveAction {
+        private final ResourcePage page;
+        private final Template template;
+
+        private ResourcePageTask(ResourcePage page, Template template) {
+            this.page = page;
+            this.template = template;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                createPage(page, template);
+            } catch (IOException | TemplateException e) {
+                throw new UncheckedPageException(e);
             }
-            sb.append(i.getKey());
-            if (!i.isWildcard()) {
-                sb.append('/');
-                sb.append(i.getValue());
+            final List<ResourcePage> children = getChildPages(page);
+            final List<ResourcePageTask> tasks = new ArrayList<>(children.size());
+            for (ResourcePage child : children) {
+                tasks.add(new ResourcePageTask(child, template));
             }
+            invokeAll(tasks);
         }
-        return sb.toString();
     }
 
+    private static final class UncheckedPageException extends RuntimeException {
+        private UncheckedPageException(Exception cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized Exception getCause() {
+            return (Exception) super.getCause();
+        }
+    }
 
     public static final class LogMessage {
-        final String level;
-        final String code;
-        final String message;
+        final MappedInput.LazyString level;
+        final MappedInput.LazyString code;
+        final MappedInput.LazyString message;
         final int length;
         final int msgId;
-        final String returnType;
+        final MappedInput.LazyString returnType;
 
-        private LogMessage(String level, String code, String message, int length, int msgId, String returnType) {
+        private LogMessage(MappedInput.LazyString level, MappedInput.LazyString code, MappedInput.LazyString message, int length, int msgId, MappedInput.LazyString returnType) {
             this.level = level;
             this.code = code;
             this.message = message;
@@ -293,15 +856,15 @@ class SingleVersionGenerator {
         }
 
         public String getLevel() {
-            return level;
+            return level.toString();
         }
 
         public String getCode() {
-            return code;
+            return code.toString();
         }
 
         public String getMessage() {
-            return message;
+            return message.toString();
         }
 
         public int getLength() {
@@ -312,6 +875,10 @@ class SingleVersionGenerator {
             return msgId;
         }
 
+        public String getReturnType() {
+            return returnType.toString();
+        }
+
         @Override
         public String toString() {
             return "LogMessage{" +
@@ -1,13 +1,18 @@
 package org.jboss.wildscribe.site;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.StringWriter;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import freemarker.template.Configuration;
 import freemarker.template.Template;
@@ -21,20 +26,35 @@ import org.jboss.logging.Logger;
  */
 class SiteGenerator {
     private static final Logger LOGGER = Logger.getLogger(SiteGenerator.class.getPackage().getName());
-    private static final String DEFAULT_LAYOUT_HTML = "layout.html";
-    private static final String SINGLE_LAYOUT_HTML = "single-layout.html";
+    static final String DEFAULT_LAYOUT_HTML = "layout.html";
+    static final String SINGLE_LAYOUT_HTML = "single-layout.html";
 
     public static final String INDEX_HTML = "index.html";
     public static final String ABOUT_HTML = "about.html";
     public static final String RESOURCE_HTML = "resource.html";
+    private static final String VERSIONS_JS = "versions.js";
     private final List<Version> versions;
     private final Configuration configuration;
+    private final SiteOutput output;
     private final Path outputDir;
+    private BuildCache buildCache;
 
-    public SiteGenerator(List<Version> versions, Configuration configuration, Path outputDir) {
+    public SiteGenerator(List<Version> versions, Configuration configuration, SiteOutput output) {
         this.versions = versions;
         this.configuration = configuration;
-        this.outputDir = outputDir;
+        this.output = output;
+        this.outputDir = output.getRoot();
+    }
+
+    /**
+     * Sets the cache used to skip versions which have not changed since the previous run. When a cache is used the
+     * versions menu is shared by every page through the {@code js/versions.js} script, so pages of unchanged versions
+     * do not need to be generated again when a version is added.
+     *
+     * @param buildCache the cache or {@code null} to generate every version
+     */
+    void setBuildCache(BuildCache buildCache) {
+        this.buildCache = buildCache;
     }
 
     public void createMainPage() throws IOException, TemplateException {
@@ -43,6 +63,7 @@ class SiteGenerator {
         data.put("page", INDEX_HTML);
         data.put("versions", versions);
         data.put("urlbase", getUrlBase());
+        data.put("sharedVersionMenu", buildCache != null);
         boolean wf = false;
         boolean eap6 = false;
         boolean as7 = false;
@@ -77,7 +98,9 @@ class SiteGenerator {
             data.put("alertMessage", am);
         }
 
-        template.process(data, new PrintWriter(Files.newBufferedWriter(outputDir.resolve(INDEX_HTML), StandardCharsets.UTF_8)));
+        final StringWriter writer = new StringWriter();
+        template.process(data, writer);
+        output.write(outputDir.resolve(INDEX_HTML), writer.toString());
     }
 
     public void createAboutPage() throws IOException, TemplateException {
@@ -86,23 +109,139 @@ class SiteGenerator {
         data.put("page", ABOUT_HTML);
         data.put("versions", versions);
         data.put("urlbase", getUrlBase());
-        template.process(data, new PrintWriter(Files.newBufferedWriter(outputDir.resolve(ABOUT_HTML), StandardCharsets.UTF_8)));
+        data.put("sharedVersionMenu", buildCache != null);
+        final StringWriter writer = new StringWriter();
+        template.process(data, writer);
+        output.write(outputDir.resolve(ABOUT_HTML), writer.toString());
+    }
+
+    /**
+     * Creates the script which fills in the versions menu of every page when the menu is shared.
+     */
+    public void createVersionMenu() throws IOException, TemplateException {
+        Template template = configuration.getTemplate(VERSIONS_JS);
+        final Map<String, Object> data = new HashMap<String, Object>();
+        data.put("versions", versions);
+        final StringWriter writer = new StringWriter();
+        template.process(data, writer);
+        output.write(outputDir.resolve("js").resolve(VERSIONS_JS), writer.toString());
     }
 
 
     public void createVersions() throws IOException, TemplateException {
+        final ResourceBodyCache bodies = GeneratorProperties.isEnabled(GeneratorProperties.DEDUPE)
+                ? new ResourceBodyCache(GeneratorProperties.getInt(GeneratorProperties.DEDUPE_CACHE_SIZE, 256) * 1024L * 1024L)
+                : null;
+        // The versions mostly describe the same resources, so the compact models share their strings
+        final CompactNode.Pool strings = GeneratorProperties.isEnabled(GeneratorProperties.COMPACT) ? new CompactNode.Pool() : null;
+        final List<Version> pending = new ArrayList<>(versions.size());
+        final Map<Version, String> fingerprints = new HashMap<>();
         for (Version version : versions) {
-            LOGGER.infof("Processing %s %s", version.getProduct(), version.getVersion());
-            new SingleVersionGenerator(versions, version, configuration, outputDir, DEFAULT_LAYOUT_HTML).generate();
+            final String fingerprint = buildCache == null ? null : buildCache.fingerprint(version, DEFAULT_LAYOUT_HTML);
+            if (!isUnchanged(version, fingerprint, outputDir.resolve(version.getProduct()).resolve(version.getVersion()))) {
+                pending.add(version);
+                fingerprints.put(version, fingerprint);
+            }
+        }
+        final int ahead = SingleVersionGenerator.isStreamed() ? 0 : GeneratorProperties.getInt(GeneratorProperties.PREFETCH, 0);
+        if (ahead <= 0 || pending.size() <= 1) {
+            createVersions(pending, fingerprints, bodies, strings, null);
+        } else {
+            final long budget = GeneratorProperties.getInt(GeneratorProperties.PREFETCH_BUDGET,
+                    (int) (Runtime.getRuntime().maxMemory() / 2 / 1024 / 1024)) * 1024L * 1024L;
+            LOGGER.infof("Loading up to %d versions ahead within %d MB", ahead, budget / 1024 / 1024);
+            try (ModelPrefetcher prefetcher = new ModelPrefetcher(pending, ahead, budget, version -> SingleVersionGenerator.load(version, strings))) {
+                createVersions(pending, fingerprints, bodies, strings, prefetcher);
+            }
+        }
+        if (bodies != null) {
+            bodies.logStatistics();
+        }
+    }
 
+    private void createVersions(final List<Version> pending, final Map<Version, String> fingerprints, final ResourceBodyCache bodies,
+                                final CompactNode.Pool strings, final ModelPrefetcher prefetcher) throws IOException, TemplateException {
+        final int parallelism = Math.min(GeneratorProperties.getThreads(GeneratorProperties.PARALLELISM, 1), pending.size());
+        if (parallelism <= 1) {
+            for (Version version : pending) {
+                createVersion(version, fingerprints.get(version), bodies, strings, prefetcher);
+            }
+            return;
+        }
+        LOGGER.infof("Generating %d versions with a parallelism of %d", pending.size(), parallelism);
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, new VersionThreadFactory());
+        try {
+            final List<Future<Void>> results = new ArrayList<>(pending.size());
+            for (Version version : pending) {
+                results.add(executor.submit(() -> {
+                    createVersion(version, fingerprints.get(version), bodies, strings, prefetcher);
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating versions", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof TemplateException) {
+                throw (TemplateException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void createVersion(final Version version, final String fingerprint, final ResourceBodyCache bodies,
+                               final CompactNode.Pool strings, final ModelPrefetcher prefetcher) throws IOException, TemplateException {
+        LOGGER.infof("Processing %s %s", version.getProduct(), version.getVersion());
+        SingleVersionGenerator gen = new SingleVersionGenerator(versions, version, configuration, output, DEFAULT_LAYOUT_HTML);
+        gen.setSharedVersionMenu(buildCache != null);
+        gen.setResourceBodyCache(bodies);
+        gen.setStringPool(strings);
+        if (prefetcher == null) {
+            gen.generate();
+        } else {
+            try {
+                gen.generate(prefetcher.take(version));
+            } finally {
+                prefetcher.release(version);
+            }
+        }
+        if (buildCache != null) {
+            buildCache.record(version, fingerprint);
         }
     }
 
 
     public void createSingleVersion() throws IOException, TemplateException {
-        SingleVersionGenerator gen = new SingleVersionGenerator(null, versions.get(0), configuration, outputDir, SINGLE_LAYOUT_HTML);
+        final Version version = versions.get(0);
+        final String fingerprint = buildCache == null ? null : buildCache.fingerprint(version, SINGLE_LAYOUT_HTML);
+        if (isUnchanged(version, fingerprint, outputDir)) {
+            return;
+        }
+        SingleVersionGenerator gen = new SingleVersionGenerator(null, version, configuration, output, SINGLE_LAYOUT_HTML);
         gen.setSingle(true);
         gen.generate();
+        if (buildCache != null) {
+            buildCache.record(version, fingerprint);
+        }
+    }
+
+    private boolean isUnchanged(final Version version, final String fingerprint, final Path versionDir) {
+        if (buildCache != null && buildCache.isCurrent(version, fingerprint) && output.retain(versionDir) > 0) {
+            LOGGER.infof("Skipping %s %s, unchanged since the previous run", version.getProduct(), version.getVersion());
+            buildCache.record(version, fingerprint);
+            return true;
+        }
+        return false;
     }
 
     private String getUrlBase() {
@@ -111,4 +250,15 @@ class SiteGenerator {
         }
         return System.getProperty("url");
     }
+
+    private static class VersionThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "wildscribe-version-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
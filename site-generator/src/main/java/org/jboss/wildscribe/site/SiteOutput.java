@@ -0,0 +1,396 @@
+package org.jboss.wildscribe.site;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.jboss.logging.Logger;
+
+/**
+ * The target every generated file is written to.
+ * <p>
+ * In incremental mode the existing site is kept. Each file is hashed and only written if its content changed since the
+ * previous run, and files which were not generated again are removed once the generation completes. The hashes are
+ * kept in a manifest in the root of the site.
+ * </p>
+ * <p>
+ * With a {@link Precompressor} each text file also gets a compressed sibling once it is completely written.
+ * </p>
+ */
+class SiteOutput {
+    private static final Logger LOGGER = Logger.getLogger(SiteOutput.class.getPackage().getName());
+
+    /**
+     * Files in the root of the site starting with this prefix hold the state of the generator and are never removed.
+     */
+    static final String METADATA_PREFIX = ".wildscribe-";
+    static final String MANIFEST = METADATA_PREFIX + "manifest";
+
+    private final Path root;
+    private final boolean incremental;
+    private final Map<String, String> previous;
+    private final Precompressor precompressor;
+    private final Map<String, String> current = new ConcurrentHashMap<>();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+
+    SiteOutput(final Path root, final boolean incremental, final Map<String, String> previous,
+                       final Precompressor precompressor) {
+        this.root = root;
+        this.incremental = incremental;
+        this.previous = previous;
+        this.precompressor = precompressor;
+    }
+
+    /**
+     * Creates the output for the directory. Unless in incremental mode the directory is emptied first. If the target
+     * is a {@code .zip} or {@code .jar} file the site is written to an {@linkplain ArchiveSiteOutput archive}.
+     *
+     * @param target        the directory the site is generated in
+     * @param incremental   {@code true} to keep the existing site and only write changed files
+     * @param precompressor the compressor writing the compressed siblings or {@code null} to not compress the site
+     *
+     * @return the output
+     *
+     * @throws IOException if the directory cannot be prepared
+     */
+    static SiteOutput create(final Path target, final boolean incremental, final Precompressor precompressor) throws IOException {
+        if (ArchiveSiteOutput.isArchive(target)) {
+            if (incremental) {
+                throw new IllegalArgumentException("Incremental generation is not supported when generating an archive " + target);
+            }
+            return ArchiveSiteOutput.create(target, precompressor);
+        }
+        final Path root = target.toAbsolutePath().normalize();
+        if (Files.notExists(root)) {
+            Files.createDirectories(root);
+            return new SiteOutput(root, incremental, Collections.emptyMap(), precompressor);
+        }
+        if (!incremental) {
+            FileUtils.delete(root, true);
+            return new SiteOutput(root, false, Collections.emptyMap(), precompressor);
+        }
+        return new SiteOutput(root, true, readManifest(root.resolve(MANIFEST)), precompressor);
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Writes a file of the site. In incremental mode the file is left untouched if the content has not changed.
+     *
+     * @param file    the file to write, must be in the site directory
+     * @param content the content of the file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void write(final Path file, final byte[] content) throws IOException {
+        if (!incremental) {
+            Files.createDirectories(file.getParent());
+            Files.write(file, content);
+            written.increment();
+            compress(file, false);
+            return;
+        }
+        final String name = relativeName(file);
+        final String hash = hash(content);
+        current.put(name, hash);
+        if (Files.exists(file)) {
+            final String previousHash = previous.get(name);
+            if (hash.equals(previousHash)
+                    || (previousHash == null && Files.size(file) == content.length && Arrays.equals(Files.readAllBytes(file), content))) {
+                unchanged.increment();
+                compress(file, true);
+                return;
+            }
+        }
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+        written.increment();
+        compress(file, false);
+    }
+
+    /**
+     * Streams a file of the site. In incremental mode the content is first streamed to a temporary file which only
+     * replaces the file if the content has changed.
+     *
+     * @param file the file to write, must be in the site directory
+     * @param in   the content of the file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void write(final Path file, final InputStream in) throws IOException {
+        Files.createDirectories(file.getParent());
+        if (!incremental) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            written.increment();
+            compress(file, false);
+            return;
+        }
+        final Path tmp = Files.createTempFile(file.getParent(), METADATA_PREFIX, ".tmp");
+        try {
+            final MessageDigest digest = newDigest();
+            try (InputStream digestIn = new DigestInputStream(in, digest)) {
+                Files.copy(digestIn, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            replace(file, tmp, FileUtils.toHex(digest.digest()));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Opens a writer for a text file of the site encoded in UTF-8. The content is streamed to the file, in incremental
+     * mode through a temporary file which only replaces the file when the writer is closed and the content has changed.
+     *
+     * @param file the file to write, must be in the site directory
+     *
+     * @return the writer, which must be closed
+     *
+     * @throws IOException if the file cannot be opened
+     */
+    Writer newWriter(final Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        if (!incremental) {
+            written.increment();
+            if (precompressor == null || !precompressor.accepts(file)) {
+                return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            }
+            return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8)) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        closed = true;
+                        super.close();
+                        compress(file, false);
+                    }
+                }
+            };
+        }
+        final Path tmp = Files.createTempFile(file.getParent(), METADATA_PREFIX, ".tmp");
+        final MessageDigest digest = newDigest();
+        final OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)), digest);
+        return new OutputStreamWriter(out, StandardCharsets.UTF_8) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    super.close();
+                    replace(file, tmp, FileUtils.toHex(digest.digest()));
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        };
+    }
+
+    /**
+     * Moves the temporary file over the file of the site unless the file already has the same content.
+     */
+    private void replace(final Path file, final Path tmp, final String hash) throws IOException {
+        final String name = relativeName(file);
+        current.put(name, hash);
+        if (Files.exists(file)) {
+            final String previousHash = previous.get(name);
+            if (hash.equals(previousHash) || (previousHash == null && hash.equals(hash(file)))) {
+                unchanged.increment();
+                compress(file, true);
+                return;
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        written.increment();
+        compress(file, false);
+    }
+
+    /**
+     * Writes the compressed sibling of a file which has been completely written. The sibling of an unchanged file is
+     * kept if the previous run generated it.
+     */
+    private void compress(final Path file, final boolean fileUnchanged) {
+        if (precompressor == null || !precompressor.accepts(file)) {
+            return;
+        }
+        if (fileUnchanged) {
+            final Path sibling = Precompressor.sibling(file);
+            final String name = relativeName(sibling);
+            final String hash = previous.get(name);
+            if (hash != null && Files.exists(sibling)) {
+                current.put(name, hash);
+                unchanged.increment();
+                return;
+            }
+        }
+        precompressor.submit(file, this);
+    }
+
+    /**
+     * Writes a text file of the site encoded in UTF-8.
+     *
+     * @param file    the file to write, must be in the site directory
+     * @param content the content of the file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void write(final Path file, final String content) throws IOException {
+        write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Keeps the files generated by the previous run in a directory of the site. The files are neither written nor
+     * removed by this run.
+     *
+     * @param dir the directory of the site to keep
+     *
+     * @return the number of files kept, {@code 0} if the previous run did not generate any files in the directory
+     */
+    int retain(final Path dir) {
+        final String name = relativeName(dir);
+        final String prefix = name.isEmpty() ? "" : name + '/';
+        int count = 0;
+        for (Map.Entry<String, String> entry : previous.entrySet()) {
+            if (entry.getKey().startsWith(prefix) && current.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                count++;
+            }
+        }
+        unchanged.add(count);
+        return count;
+    }
+
+    /**
+     * Completes the generation. In incremental mode files which were not generated in this run are removed and the
+     * manifest is updated.
+     *
+     * @throws IOException if the site could not be cleaned up
+     */
+    void finish() throws IOException {
+        if (precompressor != null) {
+            precompressor.finish();
+        }
+        if (!incremental) {
+            LOGGER.infof("Wrote %d files to %s", written.sum(), root);
+            return;
+        }
+        final long removed = prune();
+        final StringBuilder manifest = new StringBuilder();
+        new TreeMap<>(current).forEach((name, hash) -> manifest.append(hash).append(' ').append(name).append('\n'));
+        Files.write(root.resolve(MANIFEST), manifest.toString().getBytes(StandardCharsets.UTF_8));
+        LOGGER.infof("Wrote %d files to %s, %d unchanged and %d removed", written.sum(), root, unchanged.sum(), removed);
+    }
+
+    /**
+     * Abandons a generation which failed before it could {@linkplain #finish() finish}. The files already written are
+     * kept and the files not compressed yet are left without a compressed sibling.
+     */
+    void abort() {
+        if (precompressor != null) {
+            precompressor.abort();
+        }
+    }
+
+    private long prune() throws IOException {
+        final LongAdder removed = new LongAdder();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                return !root.equals(dir) && Files.isHidden(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                final String name = relativeName(file);
+                if (!Files.isHidden(file) && !name.startsWith(METADATA_PREFIX) && !current.containsKey(name)) {
+                    LOGGER.debugf("Removing %s", file);
+                    Files.delete(file);
+                    removed.increment();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                if (!root.equals(dir)) {
+                    try (Stream<Path> entries = Files.list(dir)) {
+                        if (entries.findAny().isEmpty()) {
+                            Files.delete(dir);
+                        }
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return removed.sum();
+    }
+
+    String relativeName(final Path file) {
+        return root.relativize(file.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+
+    private static Map<String, String> readManifest(final Path manifest) throws IOException {
+        if (Files.notExists(manifest)) {
+            return Collections.emptyMap();
+        }
+        final List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        final Map<String, String> result = new HashMap<>(lines.size());
+        for (String line : lines) {
+            final int index = line.indexOf(' ');
+            if (index > 0) {
+                result.put(line.substring(index + 1), line.substring(0, index));
+            }
+        }
+        return result;
+    }
+
+    private static String hash(final byte[] content) {
+        return FileUtils.toHex(newDigest().digest(content));
+    }
+
+    private static String hash(final Path file) throws IOException {
+        final MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return FileUtils.toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
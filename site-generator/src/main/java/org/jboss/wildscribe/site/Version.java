@@ -37,7 +37,7 @@ public final class Version {
 
     public File getMessagesFile() {
         //hacky, don't run this in a dir with .dmr in the name
-        String messagesFile = dmrFile.getAbsolutePath().replace(".dmr", ".messages");
+        String messagesFile = dmrFile.getAbsolutePath().replace(CompiledModel.EXTENSION, ".dmr").replace(".dmr", ".messages");
         File m = new File(messagesFile);
         if(m.exists()) {
             return m;
@@ -0,0 +1,184 @@
+package org.jboss.wildscribe.site;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import freemarker.ext.util.WrapperTemplateModel;
+import freemarker.template.AdapterTemplateModel;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleHash;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.Version;
+import freemarker.template.WrappingTemplateModel;
+
+/**
+ * An object wrapper for the view model of the site.
+ * <p>
+ * The {@link DefaultObjectWrapper} exposes the view model classes through {@link freemarker.ext.beans.BeanModel}s,
+ * which look up each property reflectively. The properties used by the templates are instead registered here once as
+ * plain getters. Objects of other types are wrapped as usual. Lists and maps, other than hash maps, are wrapped with
+ * adapters rather than being copied each time a template accesses them, which matters for the capabilities of the
+ * version looked up by every attribute referencing a capability.
+ * </p>
+ * <p>
+ * Only the registered properties of a view model class are visible to the templates, a getter used by a template must
+ * be registered here.
+ * </p>
+ */
+final class ViewModelObjectWrapper extends DefaultObjectWrapper {
+
+    private final Map<Class<?>, Map<String, Function<Object, Object>>> properties = new HashMap<>();
+
+    ViewModelObjectWrapper(final Version incompatibleImprovements) {
+        super(incompatibleImprovements);
+        setUseAdaptersForContainers(true);
+        register(ResourceDescription.class)
+                .add("description", ResourceDescription::getDescription)
+                .add("children", ResourceDescription::getChildren)
+                .add("attributes", ResourceDescription::getAttributes)
+                .add("operations", ResourceDescription::getOperations)
+                .add("deprecated", ResourceDescription::getDeprecated)
+                .add("capabilities", ResourceDescription::getCapabilities)
+                .add("storage", ResourceDescription::getStorage)
+                .add("runtime", ResourceDescription::isRuntime);
+        register(Attribute.class)
+                .add("name", Attribute::getName)
+                .add("description", Attribute::getDescription)
+                .add("type", Attribute::getType)
+                .add("nillable", Attribute::isNillable)
+                .add("expressionsAllowed", Attribute::isExpressionsAllowed)
+                .add("defaultValue", Attribute::getDefaultValue)
+                .add("min", Attribute::getMin)
+                .add("max", Attribute::getMax)
+                .add("accessType", Attribute::getAccessType)
+                .add("storage", Attribute::getStorage)
+                .add("deprecated", Attribute::getDeprecated)
+                .add("unit", Attribute::getUnit)
+                .add("restartRequired", Attribute::getRestartRequired)
+                .add("capabilityReference", Attribute::getCapabilityReference)
+                .add("allowedValues", Attribute::getAllowedValues)
+                .add("stability", Attribute::getStability);
+        register(Operation.class)
+                .add("name", Operation::getName)
+                .add("description", Operation::getDescription)
+                .add("parameters", Operation::getParameters)
+                .add("deprecated", Operation::getDeprecated)
+                .add("reply", Operation::getReply)
+                .add("readOnly", Operation::isReadOnly)
+                .add("runtimeOnly", Operation::isRuntimeOnly)
+                .add("stability", Operation::getStability);
+        register(Operation.Parameter.class)
+                .add("name", Operation.Parameter::getName)
+                .add("type", Operation.Parameter::getType)
+                .add("required", Operation.Parameter::isRequired)
+                .add("description", Operation.Parameter::getDescription)
+                .add("nillable", Operation.Parameter::isNillable)
+                .add("expressionsAllowed", Operation.Parameter::isExpressionsAllowed)
+                .add("defaultValue", Operation.Parameter::getDefaultValue);
+        register(Operation.Reply.class)
+                .add("type", Operation.Reply::getType)
+                .add("valueType", Operation.Reply::getValueType)
+                .add("description", Operation.Reply::getDescription);
+        register(Child.class)
+                .add("name", Child::getName)
+                .add("description", Child::getDescription)
+                .add("deprecated", Child::getDeprecated)
+                .add("children", Child::getChildren);
+        register(Capability.class)
+                .add("name", Capability::getName)
+                .add("dynamic", Capability::isDynamic)
+                .add("providerPoints", Capability::getProviderPoints)
+                .add("providerPointsUrls", Capability::getProviderPointsUrls)
+                .add("capabilityDescriptionUrl", Capability::getCapabilityDescriptionUrl);
+        register(Deprecated.class)
+                .add("deprecated", Deprecated::isDeprecated)
+                .add("reason", Deprecated::getReason)
+                .add("since", Deprecated::getSince);
+        register(Breadcrumb.class)
+                .add("label", Breadcrumb::getLabel)
+                .add("url", Breadcrumb::getUrl);
+        register(org.jboss.wildscribe.site.Version.class)
+                .add("product", org.jboss.wildscribe.site.Version::getProduct)
+                .add("version", org.jboss.wildscribe.site.Version::getVersion);
+    }
+
+    @Override
+    public TemplateModel wrap(final Object obj) throws TemplateModelException {
+        if (obj instanceof HashMap) {
+            // Hash maps are still copied, the pages list the provider points of a capability in the order of the copy
+            return new SimpleHash((Map<?, ?>) obj, this);
+        }
+        return super.wrap(obj);
+    }
+
+    @Override
+    protected TemplateModel handleUnknownType(final Object obj) throws TemplateModelException {
+        final Map<String, Function<Object, Object>> getters = properties.get(obj.getClass());
+        if (getters != null) {
+            return new ViewModel(obj, getters, this);
+        }
+        return super.handleUnknownType(obj);
+    }
+
+    private <T> Properties<T> register(final Class<T> type) {
+        final Properties<T> result = new Properties<>();
+        properties.put(type, result.getters);
+        return result;
+    }
+
+    private static final class Properties<T> {
+        private final Map<String, Function<Object, Object>> getters = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        Properties<T> add(final String name, final Function<T, ?> getter) {
+            getters.put(name, object -> getter.apply((T) object));
+            return this;
+        }
+    }
+
+    /**
+     * Exposes the registered properties of a view model object.
+     */
+    private static final class ViewModel extends WrappingTemplateModel
+            implements TemplateHashModel, TemplateScalarModel, AdapterTemplateModel, WrapperTemplateModel {
+        private final Object object;
+        private final Map<String, Function<Object, Object>> getters;
+
+        private ViewModel(final Object object, final Map<String, Function<Object, Object>> getters, final ObjectWrapper wrapper) {
+            super(wrapper);
+            this.object = object;
+            this.getters = getters;
+        }
+
+        @Override
+        public TemplateModel get(final String key) throws TemplateModelException {
+            final Function<Object, Object> getter = getters.get(key);
+            return getter == null ? null : wrap(getter.apply(object));
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public String getAsString() {
+            return object.toString();
+        }
+
+        @Override
+        public Object getAdaptedObject(final Class<?> hint) {
+            return object;
+        }
+
+        @Override
+        public Object getWrappedObject() {
+            return object;
+        }
+    }
+}
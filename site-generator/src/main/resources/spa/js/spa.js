@@ -0,0 +1,238 @@
+(() => {
+   "use strict";
+
+   // Renders the resources of a version written by the single page app output mode. The address of the resource shown
+   // is kept in the fragment of the URL, e.g. #/subsystem/undertow/server/default-server, and each resource is read
+   // from the JSON shard of its top level registration.
+   const container = document.getElementById("wildscribe-resource");
+   if (!container) {
+      return;
+   }
+   const dataUrl = container.dataset.url;
+   const home = container.dataset.home;
+   const shards = new Map();
+   let index;
+
+   const escape = (value) => String(value).replace(/[&<>"']/g, (c) => "&#" + c.charCodeAt(0) + ";");
+
+   const load = (file) => {
+      if (!shards.has(file)) {
+         shards.set(file, fetch(dataUrl + file).then((response) => {
+            if (!response.ok) {
+               throw new Error("Failed to load " + file + ": " + response.status);
+            }
+            return response.json();
+         }));
+      }
+      return shards.get(file);
+   };
+
+   const resolve = (url) => {
+      if (url === "") {
+         return Promise.resolve(index.resource);
+      }
+      let prefix = null;
+      Object.keys(index.shards).forEach((p) => {
+         if ((url === p || url.startsWith(p + "/")) && (prefix === null || p.length > prefix.length)) {
+            prefix = p;
+         }
+      });
+      if (prefix === null) {
+         return Promise.resolve(undefined);
+      }
+      return load(index.shards[prefix]).then((shard) => shard[url]);
+   };
+
+   const join = (url, segment) => url === "" ? segment : url + "/" + segment;
+
+   const href = (url) => "#/" + escape(url);
+
+   const stabilityEmoji = (obj) => {
+      switch (obj.stability) {
+         case "experimental":
+            return "<abbr title=\"Experimental feature\">&#x1F174;</abbr>";
+         case "preview":
+            return "<abbr title=\"Preview feature\">&#x1F17F;</abbr>";
+         case "community":
+            return "<abbr title=\"Community feature\">&#x1F172;</abbr>";
+         default:
+            return "";
+      }
+   };
+
+   const deprecated = (obj) => obj.deprecated ? "<div class=\"alert alert-danger\"><strong>Deprecated</strong> Since "
+      + escape(obj.deprecated.since || "") + "<div>" + escape(obj.deprecated.reason || "") + "</div></div>" : "";
+
+   const deprecatedClass = (obj) => obj.deprecated ? "deprecated" : "";
+
+   const providerLinks = (providers) => Object.keys(providers || {}).map((name) =>
+      "<a href=\"" + href(providers[name].replace(/\/$/, "")) + "\">" + escape(name) + "</a> <br/>").join("");
+
+   const row = (label, value) => "<tr><td><b>" + label + "</b></td><td>" + value + "</td></tr>";
+
+   const section = (id, title, count, content) => "<div class=\"page-header\"><h4 class=\"btn btn-secondary\" data-bs-toggle=\"collapse\" "
+      + "data-bs-target=\"#" + id + "\">" + title + " (" + count + ")</h4>" + content + "</div>";
+
+   const breadcrumbs = (url, resource) => {
+      const crumbs = [[home, ""]];
+      let current = "";
+      resource.path.forEach((label) => {
+         const i = label.indexOf("=");
+         current = join(current, i < 0 ? label : label.substring(0, i) + "/" + label.substring(i + 1));
+         crumbs.push([label, current]);
+      });
+      return "<div class=\"card-header\"><nav aria-label=\"breadcrumb\"><ol class=\"breadcrumb pt-3\">" + crumbs.map((crumb, i) =>
+         i < crumbs.length - 1
+            ? "<li class=\"breadcrumb-item\"><a href=\"" + href(crumb[1]) + "\">" + escape(crumb[0]) + "</a></li>"
+            : "<li class=\"breadcrumb-item active\" aria-current=\"page\">" + escape(crumb[0]) + "</li>").join("")
+         + "</ol></nav></div>";
+   };
+
+   const children = (url, resource) => {
+      const items = resource.children.map((child) => {
+         const registrations = child.registrations || [];
+         let html = "<li>" + (registrations.length === 0
+            ? "<a href=\"" + href(join(url, child.name)) + "\" class=\"" + deprecatedClass(child) + "\">" + escape(child.name) + "</a>"
+            : "<b>" + escape(child.name) + "</b>") + " " + escape(child.description || "") + "</li>";
+         if (registrations.length !== 0) {
+            html += "<ul>" + registrations.map((registration) => "<li><a href=\"" + href(join(url, child.name + "/" + registration.name))
+               + "\" class=\"" + deprecatedClass(registration) + "\">" + escape(registration.name) + "</a> "
+               + escape(registration.description || "") + "</li>").join("") + "</ul>";
+         }
+         return html;
+      });
+      return section("children", "Children", items.length, "<div class=\"collapse show\" id=\"children\"><ul>" + items.join("") + "</ul></div>");
+   };
+
+   const capabilities = (resource) => section("capabilities", "Provided capabilities", resource.capabilities.length,
+      "<div class=\"collapse show table-responsive capabilities\" id=\"capabilities\"><table class=\"table table-striped\">"
+      + "<thead><tr><th>Name</th><th>Dynamic</th><th>Other provider points</th></tr></thead><tbody>"
+      + resource.capabilities.map((cap) => "<tr><td><a href=\"https://github.com/wildfly/wildfly-capabilities/tree/master/"
+         + escape(cap.name.replace(/\./g, "/")) + "/capability.adoc\">" + escape(cap.name) + "</a></td><td>" + (cap.dynamic === true)
+         + "</td><td>" + (cap.providers ? providerLinks(cap.providers) : "<p>none</p>") + "</td></tr>").join("")
+      + "</tbody></table></div>");
+
+   const capabilityReference = (attribute) => {
+      const cap = index.capabilities[attribute.capabilityReference];
+      if (!cap) {
+         return escape(attribute.capabilityReference);
+      }
+      return "<button tabindex=\"0\" type=\"button\" class=\"btn btn-link\" data-bs-toggle=\"popover\" data-bs-target=\"#popover-"
+         + escape(attribute.name) + "-body\" data-bs-trigger=\"focus\" title=\"Provider points\">" + escape(attribute.capabilityReference)
+         + "</button><div class=\"invisible\" id=\"popover-" + escape(attribute.name) + "-body\" style=\"display:none\">"
+         + providerLinks(cap.providers) + "</div>";
+   };
+
+   const attributes = (resource) => section("attributes", "Attributes", resource.attributes.length,
+      "<div class=\"collapse show\" id=\"attributes\"><div class=\"panel\"><ul>" + resource.attributes.map((attribute) => {
+         const name = escape(attribute.name);
+         let rows = "";
+         if (attribute.defaultValue !== undefined) {
+            rows += row("Default Value", escape(attribute.defaultValue));
+         }
+         if (attribute.capabilityReference !== undefined) {
+            rows += row("Capability reference", capabilityReference(attribute));
+         }
+         rows += row("Type", escape(attribute.type || ""));
+         rows += row("Nillable", attribute.nillable === true);
+         rows += row("Expressions Allowed", attribute.expressionsAllowed === true);
+         [["min", "Min"], ["max", "Max"], ["unit", "Unit"], ["storage", "Storage"], ["accessType", "Access Type"],
+            ["restartRequired", "Restart Required"]].forEach((property) => {
+            if (attribute[property[0]] !== undefined) {
+               rows += row(property[1], escape(attribute[property[0]]));
+            }
+         });
+         if (attribute.allowedValues) {
+            rows += row("Allowed Values", attribute.allowedValues.map((value) => escape(value) + "<br/>").join(""));
+         }
+         if (attribute.stability !== undefined) {
+            rows += row("Stability", escape(attribute.stability));
+         }
+         return "<li><a id=\"attr-" + name + "\" href=\"#attr-" + name + "\" data-bs-toggle=\"collapse\" data-bs-target=\"#attribute-"
+            + name + "\" class=\"" + deprecatedClass(attribute) + "\">" + stabilityEmoji(attribute) + " " + name + "</a> "
+            + escape(attribute.description || "") + "</li><div id=\"attribute-" + name + "\" class=\"collapse\">" + deprecated(attribute)
+            + "<div class=\"table-responsive\"><table class=\"table table-striped table-hover\"><thead><tr><th>Attribute</th><th>Value</th></tr></thead>"
+            + rows + "</table></div></div>";
+      }).join("") + "</ul></div></div>");
+
+   const operations = (resource) => section("operations", "Operations", resource.operations.length,
+      "<div class=\"collapse show\" id=\"operations\"><ul>" + resource.operations.map((op) => {
+         const name = escape(op.name);
+         let details = deprecated(op);
+         if (op.parameters) {
+            details += "<table class=\"table table-striped\"><thead><tr><th>Request Parameter</th><th>Type</th><th>Required</th>"
+               + "<th>Expressions Allowed</th><th>Default value</th><th>Description</th></tr></thead><tbody>"
+               + op.parameters.map((param) => "<tr><td>" + escape(param.name) + "</td><td>" + escape(param.type || "") + "</td><td>"
+                  + (param.required === true) + "</td><td>" + (param.expressionsAllowed === true) + "</td><td>"
+                  + escape(param.defaultValue || "") + "</td><td>" + escape(param.description || "") + "</td></tr>").join("")
+               + "</tbody></table>";
+         }
+         if (op.reply) {
+            details += "<div class=\"panel panel-primary\"><div class=\"panel-heading\"><h4 class=\"panel-title\">Reply properties</h4></div>"
+               + "<div class=\"panel-body\">" + escape(op.reply.description || "") + "<dl><dt>type</dt><dd>" + escape(op.reply.type || "") + "</dd>"
+               + (op.reply.valueType !== undefined ? "<dt>Value Type</dt><dd><div class=\"highlight\"><pre><code class=\"language-json\" data-lang=\"json\">"
+                  + escape(op.reply.valueType) + "</code></pre></div></dd>" : "")
+               + "</dl></div></div>";
+         }
+         return "<li><a id=\"op-" + name + "\" href=\"#op-" + name + "\" data-bs-toggle=\"collapse\" data-bs-target=\"#operation-" + name
+            + "\" class=\"" + deprecatedClass(op) + "\">" + stabilityEmoji(op) + " " + name + "</a> " + escape(op.description || "")
+            + "<div id=\"operation-" + name + "\" class=\"collapse\">" + details + "</div></li>";
+      }).join("") + "</ul></div>");
+
+   const render = (url, resource) => {
+      let html = "<div class=\"card mb-4\">" + breadcrumbs(url, resource) + "<div class=\"card-body\">" + deprecated(resource)
+         + "<div><p>" + escape(resource.description || "") + "</p></div></div></div>";
+      if (url === "" && index.messages) {
+         html += "<div class=\"page-header\"><p><a href=\"log-message-reference.html\">Log and Exception Message Code Reference</a></p></div>";
+      }
+      if (resource.runtime) {
+         html += "<div class=\"alert alert-info\" role=\"alert\"><strong>Runtime only resource</strong> This resource is runtime only "
+            + "and doesn't have any persistent configuration.</div>";
+      }
+      if (resource.children) {
+         html += children(url, resource);
+      }
+      if (resource.capabilities) {
+         html += capabilities(resource);
+      }
+      if (resource.attributes) {
+         html += attributes(resource);
+      }
+      if (resource.operations) {
+         html += operations(resource);
+      }
+      return html;
+   };
+
+   const initPopovers = () => {
+      // Allow HTML data in popover's, the same as main.js does for the pages rendered by the generator
+      container.querySelectorAll("[data-bs-toggle='popover']").forEach((e) => {
+         new bootstrap.Popover(e, {html: true, content: document.querySelector(e.getAttribute("data-bs-target")).innerHTML});
+      });
+   };
+
+   const route = () => {
+      const hash = window.location.hash;
+      if (hash && !hash.startsWith("#/")) {
+         // A link within the page, like the collapse toggle of an attribute
+         return;
+      }
+      const url = decodeURIComponent(hash.substring(2)).replace(/\/+$/, "");
+      resolve(url).then((resource) => {
+         container.innerHTML = resource ? render(url, resource)
+            : "<div class=\"alert alert-warning\">No resource found at " + escape(url) + "</div>";
+         initPopovers();
+         window.scrollTo(0, 0);
+      }).catch((e) => {
+         container.innerHTML = "<div class=\"alert alert-danger\">" + escape(e.message) + "</div>";
+      });
+   };
+
+   load("index.json").then((data) => {
+      index = data;
+      window.addEventListener("hashchange", route);
+      route();
+   }).catch((e) => {
+      container.innerHTML = "<div class=\"alert alert-danger\">" + escape(e.message) + "</div>";
+   });
+})();
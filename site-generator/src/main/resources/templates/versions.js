@@ -0,0 +1,19 @@
+(function () {
+    var versions = [
+        <#list versions as v>
+        {product: "${v.product?js_string}", version: "${v.version?js_string}", url: "/${v.product?url}/${v.version?url}/index.html"}<#sep>,</#sep>
+        </#list>
+    ];
+    var menu = document.getElementById("versions-menu");
+    if (!menu) {
+        return;
+    }
+    versions.forEach(function (v) {
+        var link = document.createElement("a");
+        var active = menu.dataset.product === v.product && menu.dataset.version === v.version;
+        link.className = "dropdown-item " + (active ? "active" : "");
+        link.href = v.url;
+        link.textContent = v.product + " " + v.version;
+        menu.appendChild(link);
+    });
+})();
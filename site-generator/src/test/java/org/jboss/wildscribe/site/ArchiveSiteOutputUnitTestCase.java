@@ -0,0 +1,62 @@
+package org.jboss.wildscribe.site;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveSiteOutputUnitTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFinish() throws IOException {
+        final Path archive = folder.getRoot().toPath().resolve("site.zip");
+        final SiteOutput output = SiteOutput.create(archive, false, null);
+        output.write(archive.resolve("index.html"), "<html></html>");
+        try (Writer writer = output.newWriter(archive.resolve("js/versions.js"))) {
+            writer.write("var versions = [];");
+        }
+        output.finish();
+
+        assertFalse(Files.exists(tmp(archive)));
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(2, zip.size());
+            final ZipEntry entry = zip.getEntry("js/versions.js");
+            assertNotNull(entry);
+            assertArrayEquals("var versions = [];".getBytes(StandardCharsets.UTF_8), zip.getInputStream(entry).readAllBytes());
+        }
+    }
+
+    @Test
+    public void testAbort() throws IOException {
+        final Path archive = folder.getRoot().toPath().resolve("site.zip");
+        Files.write(archive, new byte[] {1, 2, 3});
+        final SiteOutput output = SiteOutput.create(archive, false, null);
+        output.write(archive.resolve("index.html"), "<html></html>");
+        assertTrue(Files.exists(tmp(archive)));
+        output.abort();
+
+        // The incomplete archive is removed and the previous one kept
+        assertFalse(Files.exists(tmp(archive)));
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(archive));
+    }
+
+    private static Path tmp(final Path archive) {
+        return archive.resolveSibling(archive.getFileName() + ".tmp");
+    }
+}
@@ -0,0 +1,103 @@
+package org.jboss.wildscribe.site;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompactNodeUnitTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRead() throws IOException {
+        final ModelNode model = TestModels.createModel();
+        final CompactNode compact = read(model, "model.dmr", new CompactNode.Pool());
+        assertEquals(model, compact.toModelNode());
+        assertEquals(TestModels.summarize(model), compact.toResourceModel());
+        assertEquals(model.keys().size(), compact.keys().length);
+    }
+
+    @Test
+    public void testOf() {
+        final ModelNode model = TestModels.createModel();
+        final CompactNode compact = CompactNode.of(model, new CompactNode.Pool());
+        assertEquals(model, compact.toModelNode());
+        assertEquals(TestModels.summarize(model), compact.toResourceModel());
+    }
+
+    @Test
+    public void testValues() throws IOException {
+        final ModelNode model = TestModels.createModel();
+        final CompactNode attributes = read(model, "model.dmr", new CompactNode.Pool()).get("attributes");
+        for (String name : model.get("attributes").keys()) {
+            final ModelNode expected = model.get("attributes", name);
+            final CompactNode value = attributes.get(name);
+            assertEquals(name, expected.getType(), value.getType());
+            assertEquals(name, expected, value.toModelNode());
+        }
+        assertEquals(ModelType.EXPRESSION, attributes.get("expression").toModelNode().getType());
+        assertEquals("${jboss.bind.address:127.0.0.1}", attributes.get("expression").toModelNode().asExpression().getExpressionString());
+        assertArrayEquals(new byte[] {0, 1, 2, (byte) 0xff}, attributes.get("bytes").toModelNode().asBytes());
+        assertEquals(TestModels.createLongString(), attributes.get("long-string").toModelNode().asString());
+        assertFalse(attributes.get("missing").isDefined());
+    }
+
+    @Test
+    public void testResource() throws IOException {
+        final ModelNode model = TestModels.createModel();
+        final CompactNode compact = read(model, "model.dmr", new CompactNode.Pool());
+        final ModelNode undertow = model.get("children", "subsystem", "model-description", "undertow");
+        assertEquals(TestModels.summarize(undertow),
+                compact.get("children").get("subsystem").get("model-description").get("undertow").toResourceModel());
+        // An undefined registration stays undefined
+        assertFalse(compact.get("children").get("subsystem").get("model-description").hasDefined("removed"));
+    }
+
+    @Test
+    public void testSharedPool() throws IOException {
+        final CompactNode.Pool pool = new CompactNode.Pool();
+        final ModelNode otherModel = TestModels.createModel();
+        otherModel.get("product-name").set("Other");
+        otherModel.get("attributes", "other").set("An attribute only in the other model");
+        final CompactNode first = read(TestModels.createModel(), "first.dmr", pool);
+        final CompactNode second = read(otherModel, "second.dmr", pool);
+
+        // The models are decoded from different files, so only the pool can make their strings the same instances
+        final String[] firstKeys = first.keys();
+        final String[] secondKeys = second.keys();
+        assertArrayEquals(firstKeys, secondKeys);
+        for (int i = 0; i < firstKeys.length; i++) {
+            assertSame(firstKeys[i], secondKeys[i]);
+        }
+        assertSame(first.get("description"), second.get("description"));
+        assertSame(first.get("attributes").get("long-string"), second.get("attributes").get("long-string"));
+        assertNotSame(first.get("product-name"), second.get("product-name"));
+        final String[] attributeKeys = second.get("attributes").keys();
+        assertSame(first.get("attributes").keys()[0], attributeKeys[0]);
+        assertEquals("other", attributeKeys[attributeKeys.length - 1]);
+
+        // Equal key sets are shared
+        final String[] keys = {pool.intern("description"), pool.intern("attributes")};
+        assertSame(keys, pool.keys(keys));
+        assertSame(keys, pool.keys(keys.clone()));
+        assertSame(keys[0], pool.intern(new String("description")));
+    }
+
+    private CompactNode read(final ModelNode model, final String name, final CompactNode.Pool pool) throws IOException {
+        final Path file = folder.getRoot().toPath().resolve(name);
+        TestModels.write(model, file);
+        return CompactNode.read(MappedInput.map(file), pool);
+    }
+}
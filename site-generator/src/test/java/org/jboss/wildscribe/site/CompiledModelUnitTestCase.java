@@ -0,0 +1,103 @@
+package org.jboss.wildscribe.site;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jboss.dmr.ModelNode;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompiledModelUnitTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ModelNode model;
+    private Path dmr;
+    private Path compiled;
+
+    @Before
+    public void compileModel() throws IOException {
+        model = TestModels.createModel();
+        dmr = folder.getRoot().toPath().resolve("model.dmr");
+        TestModels.write(model, dmr);
+        compiled = CompiledModel.getCompiledFile(dmr);
+        CompiledModel.compile(dmr, compiled);
+    }
+
+    @Test
+    public void testCompiledFile() throws IOException {
+        assertEquals(folder.getRoot().toPath().resolve("model" + CompiledModel.EXTENSION), compiled);
+        assertTrue(CompiledModel.isCompiled(compiled));
+        assertFalse(CompiledModel.isCompiled(dmr));
+        try {
+            CompiledModel.open(dmr);
+            fail("Opened a DMR file as a compiled model");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testReadModel() throws IOException {
+        assertEquals(model, CompiledModel.open(compiled).readModel());
+    }
+
+    @Test
+    public void testReadResource() throws IOException {
+        final CompiledModel compiledModel = CompiledModel.open(compiled);
+        assertEquals(TestModels.summarize(model), compiledModel.readResource(PathAddress.EMPTY_ADDRESS));
+        assertEquals(TestModels.summarize(model.get("children", "subsystem", "model-description", "undertow")),
+                compiledModel.readResource(PathAddress.pathAddress("subsystem", "undertow")));
+        assertEquals(TestModels.summarize(model.get("children", "subsystem", "model-description", "undertow", "children", "server",
+                "model-description", "*", "children", "host", "model-description", "*")),
+                compiledModel.readResource("/subsystem=undertow/server=*/host=*"));
+        // A wildcard registration next to a named one has no page but can still be read
+        assertEquals(TestModels.summarize(model.get("children", "handler", "model-description", "*")),
+                compiledModel.readResource("/handler=*"));
+        // A child type without registrations gets an undefined wildcard registration
+        assertEquals(new ModelNode(), compiledModel.readResource("/empty=*"));
+        assertNull(compiledModel.readResource("/subsystem=removed"));
+        assertNull(compiledModel.readResource("/subsystem=missing"));
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        final Map<String, ModelNode> expected = new LinkedHashMap<>();
+        DmrStreamReader.open(dmr).read((path, resource) -> expected.put(PathAddress.pathAddress(path).toCLIStyleString(), resource));
+
+        final CompiledModel compiledModel = CompiledModel.open(compiled);
+        final Map<String, ModelNode> resources = new LinkedHashMap<>();
+        compiledModel.read((path, resource) -> {
+            final String address = PathAddress.pathAddress(path).toCLIStyleString();
+            assertNull(address, resources.put(address, resource));
+        });
+        assertEquals(expected, resources);
+        for (String address : resources.keySet()) {
+            assertTrue(address, compiledModel.getAddresses().contains(address));
+            assertNotNull(address, compiledModel.readResource(address));
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        final CompiledModel compiledModel = CompiledModel.open(compiled);
+        compiledModel.close();
+        assertTrue(compiledModel.getAddresses().contains("/subsystem=undertow"));
+        try {
+            compiledModel.readResource("/subsystem=undertow");
+            fail("Read a resource of a closed model");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.jboss.wildscribe.site;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DmrStreamReaderUnitTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ModelNode model;
+    private Path file;
+
+    @Before
+    public void writeModel() throws IOException {
+        model = TestModels.createModel();
+        file = folder.getRoot().toPath().resolve("model.dmr");
+        TestModels.write(model, file);
+    }
+
+    @Test
+    public void testLongStringTag() throws IOException {
+        final byte[] bytes = Files.readAllBytes(file);
+        final byte[] length = {0, 0, 0, 0};
+        final int chars = TestModels.createLongString().length();
+        for (int i = 0; i < length.length; i++) {
+            length[i] = (byte) (chars >>> (24 - 8 * i));
+        }
+        boolean found = false;
+        for (int i = 0; i < bytes.length - length.length && !found; i++) {
+            found = bytes[i] == 'S' && Arrays.equals(Arrays.copyOfRange(bytes, i + 1, i + 1 + length.length), length);
+        }
+        assertTrue("The model has no long string", found);
+    }
+
+    @Test
+    public void testReadRootEntry() throws IOException {
+        final DmrStreamReader reader = DmrStreamReader.open(file);
+        for (String key : model.keys()) {
+            assertEquals(key, model.get(key), reader.readRootEntry(key));
+        }
+        assertEquals(ModelType.OBJECT, reader.readRootEntry("version-info").getType());
+        assertFalse(reader.readRootEntry("missing").isDefined());
+    }
+
+    @Test
+    public void testReadRootEntryNotObject() throws IOException {
+        TestModels.write(new ModelNode(TestModels.createLongString()), file);
+        assertFalse(DmrStreamReader.open(file).readRootEntry("description").isDefined());
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        final List<PathElement[]> expectedPaths = new ArrayList<>();
+        final List<ModelNode> expectedResources = new ArrayList<>();
+        collect(new PathElement[0], model, expectedPaths, expectedResources);
+
+        final List<PathElement[]> paths = new ArrayList<>();
+        final List<ModelNode> resources = new ArrayList<>();
+        DmrStreamReader.open(file).read((path, resource) -> {
+            paths.add(path);
+            resources.add(resource);
+        });
+
+        assertEquals(expectedPaths.size(), paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            final String address = PathAddress.pathAddress(expectedPaths.get(i)).toCLIStyleString();
+            assertArrayEquals(address, expectedPaths.get(i), paths.get(i));
+            assertEquals(address, expectedResources.get(i), resources.get(i));
+        }
+        assertEquals(0, paths.get(paths.size() - 1).length);
+    }
+
+    /**
+     * Collects the resources the reader should hand off, in the same order, each with its registrations summarized.
+     */
+    private static void collect(final PathElement[] path, final ModelNode resource, final List<PathElement[]> paths,
+                                final List<ModelNode> resources) {
+        final ModelNode expected = resource.clone();
+        if (resource.hasDefined("children")) {
+            for (String type : resource.get("children").keys()) {
+                final ModelNode registrations = resource.get("children", type, "model-description");
+                boolean named = false;
+                for (String name : registrations.keys()) {
+                    final ModelNode registration = registrations.get(name);
+                    if (!PathElement.WILDCARD_VALUE.equals(name)) {
+                        named = true;
+                        if (registration.isDefined()) {
+                            collect(append(path, type, name), registration, paths, resources);
+                        }
+                    }
+                    expected.get("children", type, "model-description", name).set(DmrStreamReader.summarize(registration));
+                }
+                if (!named) {
+                    final PathElement[] wildcard = append(path, type, PathElement.WILDCARD_VALUE);
+                    if (registrations.has(PathElement.WILDCARD_VALUE)) {
+                        collect(wildcard, registrations.get(PathElement.WILDCARD_VALUE), paths, resources);
+                    } else {
+                        paths.add(wildcard);
+                        resources.add(new ModelNode());
+                    }
+                }
+            }
+        }
+        paths.add(path);
+        resources.add(expected);
+    }
+
+    private static PathElement[] append(final PathElement[] path, final String key, final String value) {
+        final PathElement[] newPath = Arrays.copyOf(path, path.length + 1);
+        newPath[path.length] = PathElement.pathElement(key, value);
+        return newPath;
+    }
+}
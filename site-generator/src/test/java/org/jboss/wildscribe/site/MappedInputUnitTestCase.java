@@ -0,0 +1,213 @@
+package org.jboss.wildscribe.site;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.jboss.dmr.ModelNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedInputUnitTestCase {
+
+    private static final String[] STRINGS = {
+            "",
+            "ascii",
+            "embedded \u0000 nul",
+            "two bytes \u00e9\u00df\u07ff",
+            "three bytes \u0800\u20ac\u4e2d\uffff",
+            "surrogate pair \ud83d\ude00 \udbff\udfff",
+            "lone surrogate \ud800",
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadUTF() throws IOException {
+        final MappedInput input = map(encode(STRINGS));
+        for (String string : STRINGS) {
+            assertEquals(string, input.readUTF());
+        }
+        assertFalse(input.hasRemaining());
+    }
+
+    @Test
+    public void testReadLazyUTF() throws IOException {
+        final MappedInput input = map(encode(STRINGS));
+        final MappedInput.LazyString[] strings = new MappedInput.LazyString[STRINGS.length];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = input.readLazyUTF();
+        }
+        assertFalse(input.hasRemaining());
+        for (int i = 0; i < strings.length; i++) {
+            assertEquals(STRINGS[i].isEmpty(), strings[i].isEmpty());
+            assertEquals(STRINGS[i], strings[i].toString());
+            assertEquals(STRINGS[i], strings[i].toString());
+        }
+    }
+
+    @Test
+    public void testEncoding() throws IOException {
+        // NUL is written as two bytes and each half of a surrogate pair as three bytes, unlike standard UTF-8
+        assertEquals(1, read(new byte[] {(byte) 0xC0, (byte) 0x80}).length());
+        assertEquals("\u0000", read(new byte[] {(byte) 0xC0, (byte) 0x80}));
+        assertEquals("\ud83d\ude00", read(new byte[] {(byte) 0xED, (byte) 0xA0, (byte) 0xBD, (byte) 0xED, (byte) 0xB8, (byte) 0x80}));
+        assertEquals("\u20ac", read(new byte[] {(byte) 0xE2, (byte) 0x82, (byte) 0xAC}));
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        final byte[][] malformed = {
+                // A four byte sequence, which modified UTF-8 writes as a surrogate pair instead
+                {(byte) 0xF0, (byte) 0x9F, (byte) 0x98, (byte) 0x80},
+                // A continuation byte without a leading byte
+                {'a', (byte) 0x80},
+                // A leading byte followed by another leading byte
+                {(byte) 0xC3, 'a'},
+                {(byte) 0xE2, (byte) 0x82, 'a'},
+                // A sequence cut short by the end of the string
+                {'a', (byte) 0xC3},
+                {(byte) 0xE2, (byte) 0x82},
+        };
+        for (byte[] bytes : malformed) {
+            try {
+                read(bytes);
+                fail("Decoded malformed input " + toHex(bytes));
+            } catch (UTFDataFormatException expected) {
+            }
+            final MappedInput.LazyString string = map(withLength(bytes)).readLazyUTF();
+            try {
+                string.toString();
+                fail("Decoded malformed input " + toHex(bytes));
+            } catch (IllegalStateException expected) {
+                assertTrue(expected.getCause() instanceof UTFDataFormatException);
+            }
+        }
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        final byte[] bytes = encode("truncated");
+        final MappedInput input = map(Arrays.copyOf(bytes, bytes.length - 1));
+        try {
+            input.readUTF();
+            fail("Read past the end of the file");
+        } catch (EOFException expected) {
+        }
+        input.seek(0);
+        try {
+            input.readLazyUTF();
+            fail("Read past the end of the file");
+        } catch (EOFException expected) {
+        }
+    }
+
+    @Test
+    public void testLongString() throws IOException {
+        final String string = TestModels.createLongString();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        new ModelNode(string).writeExternal(out);
+        new ModelNode(string).writeExternal(out);
+        out.writeUTF("after");
+
+        final MappedInput input = map(bytes.toByteArray());
+        assertEquals('S', input.readUnsignedByte());
+        assertEquals(string, input.readLongString());
+        assertEquals('S', input.readUnsignedByte());
+        input.skipLongString();
+        assertEquals("after", input.readUTF());
+        assertFalse(input.hasRemaining());
+    }
+
+    @Test
+    public void testMalformedLongString() throws IOException {
+        final byte[][] malformed = {
+                {(byte) 0xF0, (byte) 0x9F, (byte) 0x98, (byte) 0x80},
+                {'a', (byte) 0x80},
+                {(byte) 0xC3, 'a'},
+                {(byte) 0xE2, (byte) 0x82, 'a'},
+        };
+        final int[] counts = {1, 2, 1, 1};
+        for (int i = 0; i < malformed.length; i++) {
+            final byte[] bytes = malformed[i];
+            try {
+                map(withCount(counts[i], bytes)).readLongString();
+                fail("Decoded malformed input " + toHex(bytes));
+            } catch (UTFDataFormatException expected) {
+            }
+        }
+        // Skipping only checks the first byte of each character
+        try {
+            map(withCount(1, malformed[0])).skipLongString();
+            fail("Skipped malformed input " + toHex(malformed[0]));
+        } catch (UTFDataFormatException expected) {
+        }
+        try {
+            map(withCount(2, new byte[] {'a', (byte) 0xC3})).readLongString();
+            fail("Read past the end of the file");
+        } catch (EOFException expected) {
+        }
+        try {
+            map(withCount(-1, new byte[0])).skipLongString();
+            fail("Skipped a negative number of characters");
+        } catch (UTFDataFormatException expected) {
+        }
+    }
+
+    private String read(final byte[] bytes) throws IOException {
+        return map(withLength(bytes)).readUTF();
+    }
+
+    private MappedInput map(final byte[] bytes) throws IOException {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+        return MappedInput.map(file);
+    }
+
+    private static byte[] encode(final String... strings) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] withLength(final byte[] bytes) {
+        final byte[] result = new byte[bytes.length + 2];
+        result[0] = (byte) (bytes.length >>> 8);
+        result[1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, result, 2, bytes.length);
+        return result;
+    }
+
+    private static byte[] withCount(final int count, final byte[] bytes) {
+        final byte[] result = new byte[bytes.length + 4];
+        for (int i = 0; i < 4; i++) {
+            result[i] = (byte) (count >>> (24 - 8 * i));
+        }
+        System.arraycopy(bytes, 0, result, 4, bytes.length);
+        return result;
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(String.format("%02x ", b & 0xFF));
+        }
+        return builder.toString().trim();
+    }
+}
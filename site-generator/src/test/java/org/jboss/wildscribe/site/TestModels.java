@@ -0,0 +1,122 @@
+package org.jboss.wildscribe.site;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.jboss.dmr.ValueExpression;
+
+/**
+ * Builds the models read back by the tests, holding a value of every type a DMR file can contain.
+ */
+final class TestModels {
+
+    private TestModels() {
+    }
+
+    /**
+     * Creates a model with a registration of each kind: named, undefined, wildcard only, named next to a wildcard and
+     * none at all.
+     */
+    static ModelNode createModel() {
+        final ModelNode model = createResource("The root resource");
+        model.get("product-name").set("WildFly");
+
+        // A node is copied when it is set, so each resource is complete before it is added to its parent
+        final ModelNode server = createResource("A server");
+        createChildType(server, "host").get("*").set(createResource("A host"));
+        final ModelNode undertow = createResource("The undertow subsystem");
+        createChildType(undertow, "server").get("*").set(server);
+        final ModelNode subsystems = createChildType(model, "subsystem");
+        subsystems.get("undertow").set(undertow);
+        subsystems.get("removed");
+
+        final ModelNode handlers = createChildType(model, "handler");
+        handlers.get("*").set(createResource("Any handler"));
+        handlers.get("file").set(createResource("The file handler"));
+
+        createChildType(model, "empty");
+
+        model.get("version-info", "product-version").set("1.0.0.Final");
+        model.get("version-info", "management-major-version").set(1);
+        return model;
+    }
+
+    /**
+     * Creates a string longer than the 65535 bytes {@link java.io.DataOutput#writeUTF(String)} can write, with one,
+     * two and three byte characters, surrogate pairs and embedded NULs.
+     */
+    static String createLongString() {
+        final StringBuilder builder = new StringBuilder();
+        while (builder.length() < 70000) {
+            builder.append("ascii \u0000 \u00e9\u00df \u20ac\u4e2d \ud83d\ude00 ");
+        }
+        return builder.toString();
+    }
+
+    static void write(final ModelNode model, final Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            final DataOutputStream data = new DataOutputStream(out);
+            model.writeExternal(data);
+            data.flush();
+        }
+    }
+
+    /**
+     * Returns a copy of a resource where each registration is reduced to its description and deprecation, as read for
+     * its page.
+     */
+    static ModelNode summarize(final ModelNode resource) {
+        final ModelNode summary = resource.clone();
+        if (summary.hasDefined("children")) {
+            for (String type : summary.get("children").keys()) {
+                final ModelNode registrations = summary.get("children", type, "model-description");
+                for (String name : registrations.keys()) {
+                    registrations.get(name).set(DmrStreamReader.summarize(registrations.get(name)));
+                }
+            }
+        }
+        return summary;
+    }
+
+    private static ModelNode createResource(final String description) {
+        final ModelNode resource = new ModelNode();
+        resource.get("description").set(description);
+        resource.get("deprecated", "since").set("1.0");
+        final ModelNode attributes = resource.get("attributes");
+        attributes.get("string").set("value \u00e9\u20ac");
+        attributes.get("long-string").set(createLongString());
+        attributes.get("int").set(42);
+        attributes.get("long").set(Long.MAX_VALUE);
+        attributes.get("double").set(1.5d);
+        attributes.get("boolean").set(true);
+        attributes.get("big-integer").set(new BigInteger("123456789012345678901234567890"));
+        attributes.get("big-decimal").set(new BigDecimal("12345678901234567890.0987654321"));
+        attributes.get("bytes").set(new byte[] {0, 1, 2, (byte) 0xff});
+        attributes.get("expression").set(new ValueExpression("${jboss.bind.address:127.0.0.1}"));
+        attributes.get("type").set(ModelType.STRING);
+        attributes.get("property").set("name", new ModelNode(7));
+        attributes.get("undefined");
+        attributes.get("list").add("one").add(2).add(new ModelNode().add(true).add(new ModelNode(ModelType.INT)));
+        attributes.get("object", "nested", "value").set(new ValueExpression("${nested}"));
+        attributes.get("object", "nested", "list").setEmptyList();
+        attributes.get("object", "empty").setEmptyObject();
+        resource.get("operations", "read-resource", "description").set("Reads the resource");
+        return resource;
+    }
+
+    private static ModelNode createChildType(final ModelNode resource, final String type) {
+        final ModelNode childType = resource.get("children", type);
+        childType.get("description").set("The " + type + " children");
+        final ModelNode registrations = childType.get("model-description");
+        registrations.setEmptyObject();
+        return registrations;
+    }
+}
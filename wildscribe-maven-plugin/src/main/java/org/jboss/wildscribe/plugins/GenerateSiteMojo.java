@@ -26,11 +26,14 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
+import javax.inject.Inject;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
 import org.jboss.as.controller.client.ModelControllerClient;
 import org.jboss.as.controller.client.Operation;
 import org.jboss.as.controller.client.helpers.Operations;
@@ -108,6 +111,26 @@ public class GenerateSiteMojo extends AbstractMojo {
     @Parameter(alias = "site-dir", defaultValue = "${project.build.directory}/wildscribe", property = "wildscribe.site.dir")
     private String siteDir;
 
+    /**
+     * The zip archive the site is written to. If set the site is written to this archive instead of the
+     * {@code site-dir} directory.
+     */
+    @Parameter(alias = "site-archive", property = "wildscribe.site.archive")
+    private String siteArchive;
+
+    /**
+     * Set to {@code true} to attach the {@code site-archive} to the project so it is installed and deployed with the
+     * project's other artifacts.
+     */
+    @Parameter(defaultValue = "false", property = "wildscribe.site.attach")
+    private boolean attach;
+
+    /**
+     * The classifier of the attached site archive.
+     */
+    @Parameter(defaultValue = "wildscribe", property = "wildscribe.site.classifier")
+    private String classifier;
+
     /**
      * This is only used for a single version and will be used for the displayed name. If left {@code null} the name
      * will be resolved from the running server.
@@ -148,12 +171,22 @@ public class GenerateSiteMojo extends AbstractMojo {
     @Parameter(defaultValue = "60", property = "wildscribe.timeout")
     private int timeout;
 
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    @Inject
+    private MavenProjectHelper projectHelper;
+
     @Override
     public void execute() throws MojoExecutionException {
         if (skip) {
             return;
         }
 
+        if (attach && siteArchive == null) {
+            throw new MojoExecutionException("The site-archive must be set to attach the generated site.");
+        }
+
         final Path wildflyHome = Paths.get(jbossHome);
         if (!ServerHelper.isValidHomeDirectory(wildflyHome)) {
             throw new MojoExecutionException(String.format("Invalid directory %s is not a valid JBoss Home directory.", jbossHome));
@@ -177,11 +210,18 @@ public class GenerateSiteMojo extends AbstractMojo {
                 createMessageFile(wildflyHome, dmrFile.getParent(), baseFileName);
 
                 // Generate the site
-                final Path siteTarget = Paths.get(siteDir);
-                if (Files.notExists(siteTarget)) {
-                    Files.createDirectories(siteTarget);
+                if (siteArchive == null) {
+                    final Path siteTarget = Paths.get(siteDir);
+                    if (Files.notExists(siteTarget)) {
+                        Files.createDirectories(siteTarget);
+                    }
+                    Generator.generate(dmrFile, siteTarget, displayName, displayVersion);
+                } else {
+                    final Path archive = Generator.generate(dmrFile, Paths.get(siteArchive), displayName, displayVersion);
+                    if (attach) {
+                        projectHelper.attachArtifact(project, "zip", classifier, archive.toFile());
+                    }
                 }
-                Generator.generate(dmrFile, siteTarget, displayName, displayVersion);
             }
         } catch (IOException | InterruptedException | TimeoutException e) {
             throw new MojoExecutionException("Failed to generate the Wildscribe sight.", e);